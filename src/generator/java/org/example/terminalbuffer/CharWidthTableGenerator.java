@@ -0,0 +1,127 @@
+package org.example.terminalbuffer;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+// Build-time generator for the CharWidth lookup table (see the generateCharWidthTable task).
+// Zero-width and control classes come from the Unicode database of the JDK running the build;
+// wide classes come from the East Asian Width table below.
+public final class CharWidthTableGenerator {
+    private static final int BLOCK_SHIFT = 8;
+    private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+    private static final byte CONTROL = -1;
+
+    // East Asian Width W/F ranges (Unicode 15), which include the emoji-presentation characters.
+    // Inclusive [start, end] pairs, sorted.
+    private static final int[] WIDE = {
+            0x1100, 0x115F, 0x231A, 0x231B, 0x2329, 0x232A, 0x23E9, 0x23EC, 0x23F0, 0x23F0,
+            0x23F3, 0x23F3, 0x25FD, 0x25FE, 0x2614, 0x2615, 0x2648, 0x2653, 0x267F, 0x267F,
+            0x2693, 0x2693, 0x26A1, 0x26A1, 0x26AA, 0x26AB, 0x26BD, 0x26BE, 0x26C4, 0x26C5,
+            0x26CE, 0x26CE, 0x26D4, 0x26D4, 0x26EA, 0x26EA, 0x26F2, 0x26F3, 0x26F5, 0x26F5,
+            0x26FA, 0x26FA, 0x26FD, 0x26FD, 0x2705, 0x2705, 0x270A, 0x270B, 0x2728, 0x2728,
+            0x274C, 0x274C, 0x274E, 0x274E, 0x2753, 0x2755, 0x2757, 0x2757, 0x2795, 0x2797,
+            0x27B0, 0x27B0, 0x27BF, 0x27BF, 0x2B1B, 0x2B1C, 0x2B50, 0x2B50, 0x2B55, 0x2B55,
+            0x2E80, 0x2E99, 0x2E9B, 0x2EF3, 0x2F00, 0x2FD5, 0x2FF0, 0x2FFB, 0x3000, 0x303E,
+            0x3041, 0x3096, 0x3099, 0x30FF, 0x3105, 0x312F, 0x3131, 0x318E, 0x3190, 0x31E3,
+            0x31F0, 0x321E, 0x3220, 0x3247, 0x3250, 0x4DBF, 0x4E00, 0xA48C, 0xA490, 0xA4C6,
+            0xA960, 0xA97C, 0xAC00, 0xD7A3, 0xF900, 0xFAFF, 0xFE10, 0xFE19, 0xFE30, 0xFE52,
+            0xFE54, 0xFE66, 0xFE68, 0xFE6B, 0xFF01, 0xFF60, 0xFFE0, 0xFFE6,
+            0x16FE0, 0x16FE4, 0x16FF0, 0x16FF1, 0x17000, 0x187F7, 0x18800, 0x18CD5, 0x18D00, 0x18D08,
+            0x1AFF0, 0x1AFF3, 0x1AFF5, 0x1AFFB, 0x1AFFD, 0x1AFFE, 0x1B000, 0x1B122, 0x1B132, 0x1B132,
+            0x1B150, 0x1B152, 0x1B155, 0x1B155, 0x1B164, 0x1B167, 0x1B170, 0x1B2FB,
+            0x1F004, 0x1F004, 0x1F0CF, 0x1F0CF, 0x1F18E, 0x1F18E, 0x1F191, 0x1F19A, 0x1F200, 0x1F202,
+            0x1F210, 0x1F23B, 0x1F240, 0x1F248, 0x1F250, 0x1F251, 0x1F260, 0x1F265, 0x1F300, 0x1F320,
+            0x1F32D, 0x1F335, 0x1F337, 0x1F37C, 0x1F37E, 0x1F393, 0x1F3A0, 0x1F3CA, 0x1F3CF, 0x1F3D3,
+            0x1F3E0, 0x1F3F0, 0x1F3F4, 0x1F3F4, 0x1F3F8, 0x1F43E, 0x1F440, 0x1F440, 0x1F442, 0x1F4FC,
+            0x1F4FF, 0x1F53D, 0x1F54B, 0x1F54E, 0x1F550, 0x1F567, 0x1F57A, 0x1F57A, 0x1F595, 0x1F596,
+            0x1F5A4, 0x1F5A4, 0x1F5FB, 0x1F64F, 0x1F680, 0x1F6C5, 0x1F6CC, 0x1F6CC, 0x1F6D0, 0x1F6D2,
+            0x1F6D5, 0x1F6D7, 0x1F6DC, 0x1F6DF, 0x1F6EB, 0x1F6EC, 0x1F6F4, 0x1F6FC, 0x1F7E0, 0x1F7EB,
+            0x1F7F0, 0x1F7F0, 0x1F90C, 0x1F93A, 0x1F93C, 0x1F945, 0x1F947, 0x1F9FF, 0x1FA70, 0x1FA7C,
+            0x1FA80, 0x1FA88, 0x1FA90, 0x1FABD, 0x1FABF, 0x1FAC5, 0x1FACE, 0x1FADB, 0x1FAE0, 0x1FAE8,
+            0x1FAF0, 0x1FAF8, 0x20000, 0x2FFFD, 0x30000, 0x3FFFD,
+    };
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) throw new IllegalArgumentException("usage: CharWidthTableGenerator <output file>");
+
+        char[] index = new char[(Character.MAX_CODE_POINT + 1) >> BLOCK_SHIFT];
+        byte[] blocks = new byte[BLOCK_SIZE * 64];
+        byte[] plane = new byte[0x10000];
+        int count = 0;
+        for (int planeBase = 0; planeBase <= Character.MAX_CODE_POINT; planeBase += plane.length) {
+            fillPlane(planeBase, plane);
+            for (int off = 0; off < plane.length; off += BLOCK_SIZE) {
+                int existing = findBlock(blocks, count, plane, off);
+                if (existing < 0) {
+                    if ((count + 1) * BLOCK_SIZE > blocks.length) {
+                        blocks = Arrays.copyOf(blocks, blocks.length * 2);
+                    }
+                    System.arraycopy(plane, off, blocks, count * BLOCK_SIZE, BLOCK_SIZE);
+                    existing = count++;
+                }
+                index[(planeBase + off) >> BLOCK_SHIFT] = (char) existing;
+            }
+        }
+
+        Path out = Path.of(args[0]);
+        Files.createDirectories(out.getParent());
+        try (OutputStream os = Files.newOutputStream(out); DataOutputStream data = new DataOutputStream(os)) {
+            data.writeInt(index.length);
+            for (char c : index) {
+                data.writeChar(c);
+            }
+            data.writeInt(count * BLOCK_SIZE);
+            data.write(blocks, 0, count * BLOCK_SIZE);
+        }
+    }
+
+    private static void fillPlane(int planeBase, byte[] plane) {
+        int planeEnd = planeBase + plane.length - 1;
+        Arrays.fill(plane, (byte) 1);
+        for (int r = 0; r < WIDE.length; r += 2) {
+            int from = Math.max(WIDE[r], planeBase);
+            int to = Math.min(WIDE[r + 1], planeEnd);
+            if (from <= to) {
+                Arrays.fill(plane, from - planeBase, to - planeBase + 1, (byte) 2);
+            }
+        }
+        // Marks, format and control characters only occur in planes 0, 1 and the start of plane 14;
+        // the other planes hold CJK extensions, unassigned or private use code points.
+        int marksEnd;
+        if (planeBase < 0x20000) {
+            marksEnd = plane.length;
+        } else if (planeBase == 0xE0000) {
+            marksEnd = 0x1000;
+        } else {
+            return;
+        }
+        for (int i = 0; i < marksEnd; i++) {
+            int type = Character.getType(planeBase + i);
+            if (type == Character.NON_SPACING_MARK || type == Character.ENCLOSING_MARK || type == Character.FORMAT) {
+                plane[i] = 0;
+            } else if (type == Character.CONTROL) {
+                plane[i] = CONTROL;
+            }
+        }
+        if (planeBase == 0) {
+            plane[0] = 0;
+            plane[0x00AD] = 1; // soft hyphen is a format character but is rendered
+            Arrays.fill(plane, 0x1160, 0x1200, (byte) 0); // Hangul medial vowels and final consonants
+        }
+    }
+
+    private static int findBlock(byte[] blocks, int count, byte[] plane, int off) {
+        // Newest first: runs of identical blocks (CJK, unassigned planes) are usually adjacent.
+        for (int b = count - 1; b >= 0; b--) {
+            int start = b * BLOCK_SIZE;
+            if (Arrays.equals(blocks, start, start + BLOCK_SIZE, plane, off, off + BLOCK_SIZE)) {
+                return b;
+            }
+        }
+        return -1;
+    }
+}
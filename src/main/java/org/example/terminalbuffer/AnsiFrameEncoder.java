@@ -0,0 +1,216 @@
+package org.example.terminalbuffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Objects;
+
+// Mirrors a TerminalBuffer's screen to an ANSI terminal by emitting only what changed since the previous
+// frame.
+//
+// The encoder takes over the buffer's damage stream (collectDamage), so work per frame is proportional to
+// the damaged rows and the output to the cells that differ from the last frame it emitted. Screen scrolls
+// become a single SU sequence. The output buffer is reused between frames and grows when needed.
+public final class AnsiFrameEncoder {
+    private static final byte ESC = 0x1B;
+    private static final int UNKNOWN = -1;
+
+    private final TerminalBuffer buffer;
+    private final Damage damage = new Damage();
+
+    // What the receiving terminal shows, in Line's packed cell format.
+    private long[][] frame = new long[0][];
+    private long[] scratch = new long[0];
+
+    // Receiving terminal state; UNKNOWN forces an explicit sequence before the next use.
+    private int termRow = UNKNOWN;
+    private int termCol = UNKNOWN;
+    private int termAttrId = UNKNOWN;
+    private boolean forceRedraw;
+
+    private ByteBuffer out = ByteBuffer.allocate(4096);
+
+    public AnsiFrameEncoder(TerminalBuffer buffer) {
+        this.buffer = Objects.requireNonNull(buffer);
+    }
+
+    // Makes the next frame repaint the whole screen, e.g. after the receiver reconnected. Nothing is
+    // assumed about the receiver's attributes or cursor, so both are sent explicitly.
+    public void reset() {
+        forceRedraw = true;
+        termRow = UNKNOWN;
+        termCol = UNKNOWN;
+        termAttrId = UNKNOWN;
+    }
+
+    // Encodes the changes since the previous frame. The returned buffer is ready to be read and is only
+    // valid until the next call.
+    public ByteBuffer encodeFrame() {
+        out.clear();
+        buffer.collectDamage(damage);
+        int height = buffer.height();
+        int width = buffer.width();
+
+        if (damage.fullRedraw() || forceRedraw || frame.length != height || scratch.length != width) {
+            startOver(height, width);
+        } else if (damage.scrollDelta() > 0) {
+            scroll(damage.scrollDelta(), width);
+        }
+
+        for (int row = 0; row < height; row++) {
+            if (!damage.isDirty(row)) continue;
+            encodeRow(row, damage.dirtyFrom(row), damage.dirtyTo(row), width);
+        }
+        moveTo(buffer.cursorRow(), buffer.cursorCol());
+        return out.flip();
+    }
+
+    // Encodes a frame and writes all of it; returns the number of bytes written.
+    public int writeFrame(WritableByteChannel channel) throws IOException {
+        ByteBuffer bytes = encodeFrame();
+        int n = bytes.remaining();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        return n;
+    }
+
+    private void startOver(int height, int width) {
+        frame = new long[height][width];
+        scratch = new long[width];
+        forceRedraw = false;
+        // Reset attributes first so the erase leaves default-background blanks, matching the empty frame.
+        sgr(0);
+        csi();
+        put('2');
+        put('J');
+        termRow = UNKNOWN;
+        termCol = UNKNOWN;
+        for (int row = 0; row < height; row++) {
+            damage.setRow(row, 0, width);
+        }
+    }
+
+    private void scroll(int delta, int width) {
+        int height = frame.length;
+        if (delta >= height) {
+            startOver(height, width);
+            return;
+        }
+        sgr(0);
+        csi();
+        putNumber(delta);
+        put('S');
+        long[][] moved = new long[height][];
+        for (int row = 0; row < height; row++) {
+            moved[row] = frame[(row + delta) % height];
+        }
+        for (int row = height - delta; row < height; row++) {
+            Arrays.fill(moved[row], Line.EMPTY_CELL);
+        }
+        frame = moved;
+    }
+
+    private void encodeRow(int row, int from, int to, int width) {
+        long[] last = frame[row];
+        buffer.screenLine(row).copyTo(0, scratch, 0, width);
+        int col = from;
+        while (col < to) {
+            if (scratch[col] == last[col]) {
+                col++;
+                continue;
+            }
+            if (Line.codePointOf(scratch[col]) == Cell.CONTINUATION && col > 0) {
+                col--;
+            }
+            col += emitCell(row, col, width);
+        }
+        // Cells outside the damaged range are unchanged, and a wide character may have been emitted from
+        // just before it, so the whole row is what the terminal now shows.
+        System.arraycopy(scratch, 0, last, 0, width);
+    }
+
+    // Emits the cell at col and returns how many columns it covers.
+    private int emitCell(int row, int col, int width) {
+        long cell = scratch[col];
+        int cp = Line.codePointOf(cell);
+        boolean wide = col + 1 < width && Line.codePointOf(scratch[col + 1]) == Cell.CONTINUATION;
+        moveTo(row, col);
+        sgr(Line.attrIdOf(cell));
+        if (cp <= 0) {
+            put(' ');
+        } else {
+            putCodePoint(cp);
+        }
+        int cells = wide ? 2 : 1;
+        termCol = col + cells;
+        if (termCol >= width) {
+            // Terminals differ on where the cursor sits after writing the last column.
+            termRow = UNKNOWN;
+            termCol = UNKNOWN;
+        }
+        return cells;
+    }
+
+    private void moveTo(int row, int col) {
+        if (row == termRow && col == termCol) return;
+        csi();
+        putNumber(row + 1);
+        put(';');
+        putNumber(col + 1);
+        put('H');
+        termRow = row;
+        termCol = col;
+    }
+
+    private void sgr(int attrId) {
+        if (attrId == termAttrId) return;
+        TextAttributes a = TextAttributes.byId(attrId);
+        csi();
+        put('0');
+        if (a.bold()) putParam(1);
+        if (a.italic()) putParam(3);
+        if (a.underline()) putParam(4);
+        if (a.fg() != TextAttributes.DEFAULT_COLOR) putParam(a.fg() < 8 ? 30 + a.fg() : 90 + a.fg() - 8);
+        if (a.bg() != TextAttributes.DEFAULT_COLOR) putParam(a.bg() < 8 ? 40 + a.bg() : 100 + a.bg() - 8);
+        put('m');
+        termAttrId = attrId;
+    }
+
+    private void csi() {
+        ensure(2);
+        out.put(ESC).put((byte) '[');
+    }
+
+    private void putParam(int n) {
+        put(';');
+        putNumber(n);
+    }
+
+    private void putNumber(int n) {
+        ensure(10);
+        if (n >= 10) {
+            putNumber(n / 10);
+        }
+        out.put((byte) ('0' + n % 10));
+    }
+
+    private void put(char c) {
+        ensure(1);
+        out.put((byte) c);
+    }
+
+    private void putCodePoint(int cp) {
+        ensure(4);
+        Utf8.encode(cp, out);
+    }
+
+    private void ensure(int n) {
+        if (out.remaining() >= n) return;
+        ByteBuffer grown = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + n));
+        out.flip();
+        grown.put(out);
+        out = grown;
+    }
+}
@@ -0,0 +1,42 @@
+package org.example.terminalbuffer;
+
+import java.nio.ByteBuffer;
+
+// Finds the end of byte runs that can take the ASCII fast paths. Array-backed input is scanned with the
+// Vector API when the jdk.incubator.vector module is in the boot layer (--add-modules jdk.incubator.vector);
+// otherwise, and for direct buffers, a scalar loop is used. Callers see identical results either way.
+final class AsciiScan {
+    static final boolean VECTORIZED = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    // Shorter spans are not worth setting up a vector loop for.
+    private static final int MIN_VECTOR_SPAN = 32;
+
+    private AsciiScan() {
+    }
+
+    // First index in [from, to) holding a control byte (< 0x20 or 0x7F) or a non-ASCII byte, else to.
+    static int printableRunEnd(ByteBuffer bytes, int from, int to) {
+        if (VECTORIZED && bytes.hasArray() && to - from >= MIN_VECTOR_SPAN) {
+            int offset = bytes.arrayOffset();
+            return VectorAsciiScan.printableRunEnd(bytes.array(), from + offset, to + offset) - offset;
+        }
+        int i = from;
+        while (i < to && isPrintableAscii(bytes.get(i))) i++;
+        return i;
+    }
+
+    // First index in [from, to) holding a non-ASCII byte, else to.
+    static int asciiRunEnd(ByteBuffer bytes, int from, int to) {
+        if (VECTORIZED && bytes.hasArray() && to - from >= MIN_VECTOR_SPAN) {
+            int offset = bytes.arrayOffset();
+            return VectorAsciiScan.asciiRunEnd(bytes.array(), from + offset, to + offset) - offset;
+        }
+        int i = from;
+        while (i < to && bytes.get(i) >= 0) i++;
+        return i;
+    }
+
+    static boolean isPrintableAscii(byte b) {
+        return b >= 0x20 && b != 0x7F;
+    }
+}
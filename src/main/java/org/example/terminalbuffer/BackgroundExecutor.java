@@ -0,0 +1,17 @@
+package org.example.terminalbuffer;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Shared daemon thread for background maintenance (cold chunk compression, search indexing) when the
+// caller does not supply an executor.
+final class BackgroundExecutor {
+    static final ExecutorService INSTANCE = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "terminalbuffer-background");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private BackgroundExecutor() {
+    }
+}
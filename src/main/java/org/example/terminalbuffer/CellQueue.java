@@ -0,0 +1,67 @@
+package org.example.terminalbuffer;
+
+// FIFO of packed cells backed by a growable ring; used as the carry chain of insert().
+final class CellQueue {
+    private long[] ring = new long[64];
+    private int head;
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    void ensureCapacity(int capacity) {
+        if (capacity <= ring.length) return;
+        long[] grown = new long[Math.max(capacity, ring.length * 2)];
+        int first = Math.min(size, ring.length - head);
+        System.arraycopy(ring, head, grown, 0, first);
+        System.arraycopy(ring, 0, grown, first, size - first);
+        ring = grown;
+        head = 0;
+    }
+
+    void add(long cell) {
+        ensureCapacity(size + 1);
+        ring[(head + size) % ring.length] = cell;
+        size++;
+    }
+
+    long peek(int offset) {
+        return ring[(head + offset) % ring.length];
+    }
+
+    // Appends line cells [col, col + len) at the back.
+    void pushFrom(Line line, int col, int len) {
+        ensureCapacity(size + len);
+        int tail = (head + size) % ring.length;
+        int first = Math.min(len, ring.length - tail);
+        line.copyTo(col, ring, tail, first);
+        line.copyTo(col + first, ring, 0, len - first);
+        size += len;
+    }
+
+    // Removes len cells from the front into line cells [col, col + len).
+    void popInto(Line line, int col, int len) {
+        int first = Math.min(len, ring.length - head);
+        line.copyFrom(ring, head, col, first);
+        line.copyFrom(ring, 0, col + first, len - first);
+        head = (head + len) % ring.length;
+        size -= len;
+    }
+
+    // Drops trailing empty cells, never shrinking below keep.
+    void trimTrailingEmpty(int keep) {
+        while (size > keep && Line.codePointOf(peek(size - 1)) == Cell.EMPTY) {
+            size--;
+        }
+    }
+}
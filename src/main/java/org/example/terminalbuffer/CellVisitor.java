@@ -0,0 +1,7 @@
+package org.example.terminalbuffer;
+
+// Receives cells in row-major order from forEachCell. Attribute ids resolve via TextAttributes.byId.
+@FunctionalInterface
+public interface CellVisitor {
+    void visit(int globalRow, int col, int codePoint, int attrId);
+}
@@ -0,0 +1,49 @@
+package org.example.terminalbuffer;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+public final class CharWidth {
+    public static final int CONTROL = -1;
+
+    private static final int BLOCK_SHIFT = 8;
+    private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+
+    // Two-level lookup generated at build time by CharWidthTableGenerator: INDEX maps the high bits
+    // of a code point to a 256-entry block in BLOCKS. Identical blocks (unassigned planes, CJK, Latin)
+    // are stored once.
+    private static final char[] INDEX;
+    private static final byte[] BLOCKS;
+
+    static {
+        try (InputStream in = CharWidth.class.getResourceAsStream("charwidth.bin")) {
+            if (in == null) throw new IllegalStateException("charwidth.bin is missing, run the generateCharWidthTable task");
+            DataInputStream data = new DataInputStream(in);
+            INDEX = new char[data.readInt()];
+            for (int i = 0; i < INDEX.length; i++) {
+                INDEX[i] = data.readChar();
+            }
+            BLOCKS = new byte[data.readInt()];
+            data.readFully(BLOCKS);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private CharWidth() {
+    }
+
+    // Returns the number of terminal cells the code point occupies: 2 for wide, 1 for normal,
+    // 0 for combining/zero-width characters and CONTROL for control characters.
+    public static int of(int codePoint) {
+        if (codePoint >= 0x20 && codePoint < 0x7F) return 1;
+        if (codePoint < 0 || codePoint > Character.MAX_CODE_POINT) return CONTROL;
+        return BLOCKS[(INDEX[codePoint >> BLOCK_SHIFT] << BLOCK_SHIFT) | (codePoint & (BLOCK_SIZE - 1))];
+    }
+
+    public static boolean isWide(int codePoint) {
+        return of(codePoint) == 2;
+    }
+}
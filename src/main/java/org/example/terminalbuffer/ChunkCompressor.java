@@ -0,0 +1,139 @@
+package org.example.terminalbuffer;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Deflates cold scrollback chunks off the writer thread and inflates them on demand.
+//
+// The writer only hands a full chunk to the executor. The worker serializes the chunk's lines, publishes
+// the compressed bytes and then drops the line array; both fields are volatile, so a reader that sees no
+// lines is guaranteed to see the compressed bytes. Inflated chunks go to a small LRU cache that is shared
+// by all reading threads.
+final class ChunkCompressor {
+    private static final int CACHED_CHUNKS = 4;
+
+    private final Executor executor;
+    // Once set, no chunk loses its line array any more; compress() checks it under the chunk's lock.
+    private volatile boolean stopped;
+    private final AtomicInteger inflations = new AtomicInteger();
+
+    private final Map<Scrollback.Chunk, CompactLine[]> inflated = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Scrollback.Chunk, CompactLine[]> eldest) {
+            return size() > CACHED_CHUNKS;
+        }
+    };
+
+    ChunkCompressor(Executor executor) {
+        this.executor = executor;
+    }
+
+    void submit(Scrollback.Chunk chunk) {
+        if (chunk.submitted || stopped) return;
+        chunk.submitted = true;
+        executor.execute(() -> compress(chunk));
+    }
+
+    CompactLine[] inflate(Scrollback.Chunk chunk) {
+        synchronized (inflated) {
+            CompactLine[] lines = inflated.get(chunk);
+            if (lines != null) return lines;
+        }
+        CompactLine[] lines = decompress(chunk);
+        inflations.incrementAndGet();
+        synchronized (inflated) {
+            inflated.put(chunk, lines);
+        }
+        return lines;
+    }
+
+    int inflations() {
+        return inflations.get();
+    }
+
+    void stop() {
+        stopped = true;
+    }
+
+    // Gives a compressed chunk its line array back; after stop() it stays that way.
+    void restore(Scrollback.Chunk chunk) {
+        synchronized (chunk) {
+            if (chunk.lines == null) {
+                chunk.lines = decompress(chunk);
+                inflations.incrementAndGet();
+            }
+        }
+    }
+
+    void invalidate() {
+        synchronized (inflated) {
+            inflated.clear();
+        }
+    }
+
+    private void compress(Scrollback.Chunk chunk) {
+        CompactLine[] lines = chunk.lines;
+        if (lines == null) return;
+
+        int size = lines.length * 4;
+        for (CompactLine line : lines) {
+            size += line.encodedSize();
+        }
+        ByteBuffer raw = ByteBuffer.allocate(size);
+        raw.position(lines.length * 4);
+        for (int i = 0; i < lines.length; i++) {
+            raw.putInt(i * 4, raw.position());
+            lines[i].writeTo(raw);
+        }
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw.array());
+            deflater.finish();
+            byte[] out = new byte[Math.max(64, size / 4)];
+            int len = 0;
+            while (!deflater.finished()) {
+                if (len == out.length) out = Arrays.copyOf(out, out.length * 2);
+                len += deflater.deflate(out, len, out.length - len);
+            }
+            synchronized (chunk) {
+                if (stopped) return;
+                chunk.uncompressedSize = size;
+                chunk.compressed = Arrays.copyOf(out, len);
+                chunk.lines = null;
+            }
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static CompactLine[] decompress(Scrollback.Chunk chunk) {
+        byte[] raw = new byte[chunk.uncompressedSize];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(chunk.compressed);
+            int len = 0;
+            while (len < raw.length) {
+                len += inflater.inflate(raw, len, raw.length - len);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("corrupt scrollback chunk", e);
+        } finally {
+            inflater.end();
+        }
+
+        ByteBuffer buf = ByteBuffer.wrap(raw);
+        CompactLine[] lines = new CompactLine[Scrollback.CHUNK_SIZE];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = CompactLine.readFrom(buf, buf.getInt(i * 4));
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,199 @@
+package org.example.terminalbuffer;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// Immutable, run-length encoded copy of a Line used for scrollback. Trailing empty cells with default
+// attributes are not stored, attributes are kept as runs (start column + id) and lines that only hold
+// ASCII keep their code points as bytes. Columns past the stored content read as empty cells.
+final class CompactLine implements LineView {
+    private static final byte[] NO_BYTES = new byte[0];
+    private static final int[] NO_RUNS = new int[0];
+
+    private final int width;
+    private final int length;
+    private final byte[] ascii;
+    private final int[] codePoints;
+    private final int[] runStarts;
+    private final int[] runAttrIds;
+
+    private CompactLine(int width, int length, byte[] ascii, int[] codePoints, int[] runStarts, int[] runAttrIds) {
+        this.width = width;
+        this.length = length;
+        this.ascii = ascii;
+        this.codePoints = codePoints;
+        this.runStarts = runStarts;
+        this.runAttrIds = runAttrIds;
+    }
+
+    static CompactLine blank(int width) {
+        return new CompactLine(width, 0, NO_BYTES, null, NO_RUNS, NO_RUNS);
+    }
+
+    static CompactLine of(Line line) {
+        int width = line.width();
+        int length = line.contentLength();
+        if (length == 0) return blank(width);
+
+        boolean allAscii = true;
+        int runs = 1;
+        for (int col = 0; col < length; col++) {
+            int cp = line.codePointAt(col);
+            if (cp < 0 || cp > 0x7F) allAscii = false;
+            if (col > 0 && line.attrIdAt(col) != line.attrIdAt(col - 1)) runs++;
+        }
+
+        byte[] ascii = null;
+        int[] codePoints = null;
+        if (allAscii) {
+            ascii = new byte[length];
+            for (int col = 0; col < length; col++) {
+                ascii[col] = (byte) line.codePointAt(col);
+            }
+        } else {
+            codePoints = new int[length];
+            for (int col = 0; col < length; col++) {
+                codePoints[col] = line.codePointAt(col);
+            }
+        }
+
+        int[] runStarts = new int[runs];
+        int[] runAttrIds = new int[runs];
+        int r = 0;
+        for (int col = 0; col < length; col++) {
+            int id = line.attrIdAt(col);
+            if (col == 0 || id != runAttrIds[r - 1]) {
+                runStarts[r] = col;
+                runAttrIds[r] = id;
+                r++;
+            }
+        }
+        return new CompactLine(width, length, ascii, codePoints, runStarts, runAttrIds);
+    }
+
+    // Same content in a line of another width; the arrays are shared.
+    CompactLine withWidth(int width) {
+        if (width < length) throw new IllegalArgumentException("width " + width + " < length " + length);
+        return width == this.width ? this : new CompactLine(width, length, ascii, codePoints, runStarts, runAttrIds);
+    }
+
+    // Serialized form: width, length, kind (0 = ASCII bytes, 1 = int code points), run count, runs as
+    // (start, attribute id) pairs, then the code points.
+    int encodedSize() {
+        return 13 + runStarts.length * 8 + (ascii != null ? length : length * 4);
+    }
+
+    void writeTo(ByteBuffer out) {
+        out.putInt(width).putInt(length).put((byte) (ascii != null ? 0 : 1)).putInt(runStarts.length);
+        for (int r = 0; r < runStarts.length; r++) {
+            out.putInt(runStarts[r]).putInt(runAttrIds[r]);
+        }
+        if (ascii != null) {
+            out.put(ascii);
+        } else {
+            for (int cp : codePoints) {
+                out.putInt(cp);
+            }
+        }
+    }
+
+    static CompactLine readFrom(ByteBuffer in, int at) {
+        int width = in.getInt(at);
+        int length = in.getInt(at + 4);
+        boolean isAscii = in.get(at + 8) == 0;
+        int runs = in.getInt(at + 9);
+        int pos = at + 13;
+        if (length == 0) return blank(width);
+
+        int[] runStarts = new int[runs];
+        int[] runAttrIds = new int[runs];
+        for (int r = 0; r < runs; r++, pos += 8) {
+            runStarts[r] = in.getInt(pos);
+            runAttrIds[r] = in.getInt(pos + 4);
+        }
+        if (isAscii) {
+            byte[] ascii = new byte[length];
+            in.get(pos, ascii);
+            return new CompactLine(width, length, ascii, null, runStarts, runAttrIds);
+        }
+        int[] codePoints = new int[length];
+        for (int i = 0; i < length; i++, pos += 4) {
+            codePoints[i] = in.getInt(pos);
+        }
+        return new CompactLine(width, length, null, codePoints, runStarts, runAttrIds);
+    }
+
+    @Override
+    public int width() {
+        return width;
+    }
+
+    int length() {
+        return length;
+    }
+
+    @Override
+    public int codePointAt(int col) {
+        if (col >= length) return Cell.EMPTY;
+        return ascii != null ? ascii[col] : codePoints[col];
+    }
+
+    @Override
+    public int attrIdAt(int col) {
+        if (col >= length) return 0;
+        return runAttrIds[runIndex(col)];
+    }
+
+    private int runIndex(int col) {
+        int lo = 0;
+        int hi = runStarts.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (runStarts[mid] <= col) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    // Runs are walked once instead of searched per cell.
+    @Override
+    public void copyCells(int col, int len, int[] codePoints, int[] attrIds, int at) {
+        int stored = Math.max(0, Math.min(col + len, length) - col);
+        if (codePoints != null) {
+            for (int i = 0; i < stored; i++) {
+                codePoints[at + i] = ascii != null ? ascii[col + i] : this.codePoints[col + i];
+            }
+            Arrays.fill(codePoints, at + stored, at + len, Cell.EMPTY);
+        }
+        if (attrIds != null) {
+            if (stored > 0) {
+                int r = runIndex(col);
+                for (int i = 0; i < stored; i++) {
+                    if (r + 1 < runStarts.length && runStarts[r + 1] == col + i) r++;
+                    attrIds[at + i] = runAttrIds[r];
+                }
+            }
+            Arrays.fill(attrIds, at + stored, at + len, 0);
+        }
+    }
+
+    @Override
+    public String toPlainString() {
+        StringBuilder sb = new StringBuilder(width);
+        for (int col = 0; col < length; col++) {
+            int cp = codePointAt(col);
+            if (cp <= 0) {
+                sb.append(' ');
+            } else {
+                sb.appendCodePoint(cp);
+            }
+        }
+        for (int col = length; col < width; col++) {
+            sb.append(' ');
+        }
+        return sb.toString();
+    }
+}
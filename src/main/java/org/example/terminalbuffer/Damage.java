@@ -0,0 +1,74 @@
+package org.example.terminalbuffer;
+
+import java.util.Arrays;
+
+// What changed on the screen between two TerminalBuffer.collectDamage calls.
+//
+// A renderer first handles fullRedraw() (repaint everything) or scrollDelta() (move its previous frame up by
+// that many rows and treat the rows that came in at the bottom as blank), then repaints the dirty column
+// range of every dirty row. Rows are logical screen rows after the scroll. Instances are reused across calls.
+public final class Damage {
+    private boolean fullRedraw;
+    private int scrollDelta;
+    private int rows;
+    private int[] from = new int[0];
+    private int[] to = new int[0];
+
+    public boolean fullRedraw() {
+        return fullRedraw;
+    }
+
+    public int scrollDelta() {
+        return scrollDelta;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public boolean isDirty(int row) {
+        checkRow(row);
+        return from[row] < to[row];
+    }
+
+    public int dirtyFrom(int row) {
+        checkRow(row);
+        return from[row];
+    }
+
+    // Exclusive.
+    public int dirtyTo(int row) {
+        checkRow(row);
+        return to[row];
+    }
+
+    public boolean isEmpty() {
+        if (fullRedraw || scrollDelta != 0) return false;
+        for (int row = 0; row < rows; row++) {
+            if (from[row] < to[row]) return false;
+        }
+        return true;
+    }
+
+    void reset(int rows, boolean fullRedraw, int scrollDelta) {
+        if (from.length < rows) {
+            from = new int[rows];
+            to = new int[rows];
+        } else {
+            Arrays.fill(from, 0, rows, 0);
+            Arrays.fill(to, 0, rows, 0);
+        }
+        this.rows = rows;
+        this.fullRedraw = fullRedraw;
+        this.scrollDelta = scrollDelta;
+    }
+
+    void setRow(int row, int dirtyFrom, int dirtyTo) {
+        from[row] = dirtyFrom;
+        to[row] = dirtyTo;
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= rows) throw new IllegalArgumentException("row out of bounds: " + row);
+    }
+}
@@ -0,0 +1,257 @@
+package org.example.terminalbuffer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Append-only scrollback tier for lines evicted from the in-memory ring. Lines are serialized into
+// memory-mapped segment files; each segment starts with a table of record offsets, so reading a line
+// back is one lookup into a mapping. The segment being written stays mapped and a few recently read
+// segments are kept mapped in an LRU cache. Only the first line number of each segment lives on the heap.
+//
+// Segment files are numbered by an id that is never reused, so a file name always refers to the same
+// bytes. The files written between two clears form a generation; see Generation for when they go.
+final class DiskScrollback implements AutoCloseable {
+    static final int DEFAULT_LINES_PER_SEGMENT = 4096;
+    static final int DEFAULT_SEGMENT_BYTES = 4 << 20;
+    private static final int CACHED_SEGMENTS = 4;
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final Path directory;
+    private final int linesPerSegment;
+    private final int segmentBytes;
+
+    private int[] segmentFirstLine = new int[8];
+    private int segmentCount;
+    private int size;
+    private Generation generation;
+
+    private MappedByteBuffer writeSegment;
+    private int writeLines;
+
+    // Keyed by segment id.
+    private final Map<Integer, ByteBuffer> readCache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, ByteBuffer> eldest) {
+            return size() > CACHED_SEGMENTS;
+        }
+    };
+
+    DiskScrollback(Path parent, int linesPerSegment, int segmentBytes) {
+        if (linesPerSegment <= 0) throw new IllegalArgumentException("linesPerSegment must be > 0");
+        if (segmentBytes <= 0) throw new IllegalArgumentException("segmentBytes must be > 0");
+        this.linesPerSegment = linesPerSegment;
+        this.segmentBytes = segmentBytes;
+        try {
+            this.directory = Files.createTempDirectory(parent, "scrollback-");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.generation = new Generation(directory, 0);
+    }
+
+    int size() {
+        return size;
+    }
+
+    void append(CompactLine line) {
+        int recordSize = line.encodedSize();
+        if (writeSegment == null || writeLines == linesPerSegment || writeSegment.remaining() < recordSize) {
+            startSegment(recordSize);
+        }
+        writeSegment.putInt(writeLines * 4, writeSegment.position());
+        line.writeTo(writeSegment);
+        writeLines++;
+        size++;
+    }
+
+    CompactLine get(int index) {
+        int segment = segmentOf(segmentFirstLine, segmentCount, index);
+        ByteBuffer buf = segment == segmentCount - 1 ? writeSegment : mapped(generation.firstId() + segment);
+        int offset = buf.getInt((index - segmentFirstLine[segment]) * 4);
+        return CompactLine.readFrom(buf, offset);
+    }
+
+    // Read-only view of the lines written so far, for snapshots. Entries of segmentFirstLine below
+    // segmentCount never change (clear() starts a new array), so the view shares it. The view keeps its
+    // generation's files from being deleted by clear(); only close() removes them, after which the view
+    // throws instead of reading.
+    View view() {
+        generation.viewed = true;
+        return new View(generation, segmentFirstLine, segmentCount, size);
+    }
+
+    final class View {
+        private final Generation generation;
+        private final int[] firstLines;
+        private final int segments;
+        private final int size;
+
+        private View(Generation generation, int[] firstLines, int segments, int size) {
+            this.generation = generation;
+            this.firstLines = firstLines;
+            this.segments = segments;
+            this.size = size;
+        }
+
+        int size() {
+            return size;
+        }
+
+        CompactLine get(int index) {
+            int segment = segmentOf(firstLines, segments, index);
+            ByteBuffer buf = mapped(generation.firstId() + segment);
+            return CompactLine.readFrom(buf, buf.getInt((index - firstLines[segment]) * 4));
+        }
+    }
+
+    void clear() {
+        writeSegment = null;
+        writeLines = 0;
+        synchronized (readCache) {
+            readCache.clear();
+        }
+        Generation old = generation;
+        generation = new Generation(directory, old.firstId() + segmentCount);
+        if (!old.viewed) {
+            old.delete();
+        }
+        segmentFirstLine = new int[8];
+        segmentCount = 0;
+        size = 0;
+    }
+
+    @Override
+    public void close() {
+        clear();
+        generation.delete();
+        try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(directory)) {
+            for (Path p : leftovers) {
+                deleteQuietly(p);
+            }
+        } catch (IOException ignored) {
+            // best effort: mapped files cannot be deleted on every platform
+        }
+        deleteQuietly(directory);
+    }
+
+    private void startSegment(int recordSize) {
+        if (writeSegment != null) {
+            synchronized (readCache) {
+                readCache.put(generation.firstId() + segmentCount - 1, writeSegment);
+            }
+        }
+        int header = linesPerSegment * 4;
+        long mapSize = Math.max(segmentBytes, (long) header + recordSize);
+        generation.files.count = segmentCount + 1;
+        try (FileChannel ch = FileChannel.open(segmentPath(directory, generation.firstId() + segmentCount),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            writeSegment = ch.map(FileChannel.MapMode.READ_WRITE, 0, mapSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        writeSegment.position(header);
+        writeLines = 0;
+
+        if (segmentCount == segmentFirstLine.length) {
+            segmentFirstLine = Arrays.copyOf(segmentFirstLine, segmentCount * 2);
+        }
+        segmentFirstLine[segmentCount++] = size;
+    }
+
+    private static int segmentOf(int[] segmentFirstLine, int segmentCount, int index) {
+        int lo = 0;
+        int hi = segmentCount - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (segmentFirstLine[mid] <= index) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    // The cache is shared by concurrent readers (parallel search), and an access-ordered map changes
+    // on every get, so all cache access is locked.
+    private ByteBuffer mapped(int id) {
+        synchronized (readCache) {
+            ByteBuffer buf = readCache.get(id);
+            if (buf != null) return buf;
+            try (FileChannel ch = FileChannel.open(segmentPath(directory, id), StandardOpenOption.READ)) {
+                buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            } catch (NoSuchFileException e) {
+                throw new IllegalStateException("disk scrollback was closed", e);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            readCache.put(id, buf);
+            return buf;
+        }
+    }
+
+    private static Path segmentPath(Path directory, int id) {
+        return directory.resolve(String.format("segment-%06d.bin", id));
+    }
+
+    // The segment files written between two clears. clear() deletes them at once unless a view was
+    // taken; views keep their generation reachable, so the files then go once the last view is
+    // collected, or at close().
+    private static final class Generation {
+        final SegmentFiles files;
+        final Cleaner.Cleanable cleanable;
+        boolean viewed;
+
+        Generation(Path directory, int firstId) {
+            this.files = new SegmentFiles(directory, firstId);
+            this.cleanable = CLEANER.register(this, files);
+        }
+
+        int firstId() {
+            return files.firstId;
+        }
+
+        void delete() {
+            cleanable.clean();
+        }
+    }
+
+    // Runs on the cleaner thread, so it must not refer to its Generation.
+    private static final class SegmentFiles implements Runnable {
+        final Path directory;
+        final int firstId;
+        volatile int count;
+
+        SegmentFiles(Path directory, int firstId) {
+            this.directory = directory;
+            this.firstId = firstId;
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < count; i++) {
+                deleteQuietly(segmentPath(directory, firstId + i));
+            }
+        }
+    }
+
+    private static void deleteQuietly(Path p) {
+        try {
+            Files.deleteIfExists(p);
+        } catch (IOException ignored) {
+            // best effort: mapped files cannot be deleted on every platform
+        }
+    }
+}
@@ -1,34 +1,185 @@
 package org.example.terminalbuffer;
 
-public final class Line {
-    private final int[] codePoints;
-    private final TextAttributes[] attrs;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public final class Line implements LineView {
+    // Each cell is packed into one long: low 32 bits = code point, high 32 bits = attribute id.
+    // Default attributes have id 0, so a zeroed cell is an empty cell with default attributes.
+    static final long EMPTY_CELL = pack(Cell.EMPTY, 0);
+
+    // Cells [0, width) are the line; the array may be longer after a resize made the line narrower, so
+    // that growing it again does not allocate. Cells past width are stale and cleared when exposed.
+    private long[] cells;
+    private int width;
+
+    // Columns changed since the last markClean(), as [dirtyFrom, dirtyTo); empty when dirtyFrom >= dirtyTo.
+    // The range travels with the line when the screen scrolls.
+    private int dirtyFrom;
+    private int dirtyTo;
+
+    // Set once a snapshot references this line; the buffer then copies it before the next change.
+    private boolean shared;
+
+    // Set when text continued on the next row because it reached the right edge (a soft wrap); resize
+    // joins such rows back into one logical line before rewrapping them.
+    private boolean wrapped;
 
     public Line(int width) {
         if (width <= 0) throw new IllegalArgumentException("width must be > 0");
-        this.codePoints = new int[width];
-        this.attrs = new TextAttributes[width];
-        TextAttributes def = TextAttributes.defaults();
-        for (int i = 0; i < width; i++) {
-            attrs[i] = def;
-        }
+        this.cells = new long[width];
+        this.width = width;
+        this.dirtyFrom = width;
+    }
+
+    private Line(long[] cells) {
+        this.cells = cells;
+        this.width = cells.length;
+        this.dirtyFrom = cells.length;
+    }
+
+    static long pack(int codePoint, int attrId) {
+        return (codePoint & 0xFFFFFFFFL) | ((long) attrId << 32);
+    }
+
+    static int codePointOf(long cell) {
+        return (int) cell;
+    }
+
+    static int attrIdOf(long cell) {
+        return (int) (cell >>> 32);
     }
 
+    @Override
     public int width() {
-        return codePoints.length;
+        return width;
+    }
+
+    int capacity() {
+        return cells.length;
+    }
+
+    // Changes the width in place. Only newly exposed cells are cleared; the array grows by at least half
+    // when it has to, so a window dragged back and forth settles on one allocation per line.
+    void setWidth(int newWidth) {
+        if (newWidth <= 0) throw new IllegalArgumentException("width must be > 0");
+        if (newWidth > cells.length) {
+            cells = Arrays.copyOf(cells, Math.max(newWidth, cells.length + (cells.length >> 1)));
+        }
+        if (newWidth > width) {
+            Arrays.fill(cells, width, newWidth, EMPTY_CELL);
+        }
+        width = newWidth;
+        dirtyFrom = 0;
+        dirtyTo = newWidth;
     }
 
+    @Override
     public int codePointAt(int col) {
-        return codePoints[col];
+        return codePointOf(cells[col]);
     }
 
+    @Override
+    public int attrIdAt(int col) {
+        return attrIdOf(cells[col]);
+    }
+
+    @Override
     public TextAttributes attrsAt(int col) {
-        return attrs[col];
+        return TextAttributes.byId(attrIdOf(cells[col]));
     }
 
     public void setCell(int col, int codePoint, TextAttributes a) {
-        codePoints[col] = codePoint;
-        attrs[col] = TextAttributes.intern(a);
+        setCell(col, codePoint, a.id());
+    }
+
+    void setCell(int col, int codePoint, int attrId) {
+        cells[col] = pack(codePoint, attrId);
+        markDirty(col, col + 1);
+    }
+
+    void setRun(int col, CharSequence src, int from, int to, int attrId) {
+        markDirty(col, col + to - from);
+        long attrBits = (long) attrId << 32;
+        for (int i = from; i < to; i++) {
+            cells[col++] = src.charAt(i) | attrBits;
+        }
+    }
+
+    void setAsciiRun(int col, ByteBuffer src, int from, int to, int attrId) {
+        markDirty(col, col + to - from);
+        long attrBits = (long) attrId << 32;
+        for (int i = from; i < to; i++) {
+            cells[col++] = src.get(i) | attrBits;
+        }
+    }
+
+    @Override
+    public void copyCells(int col, int len, int[] codePoints, int[] attrIds, int at) {
+        for (int i = 0; i < len; i++) {
+            long cell = cells[col + i];
+            if (codePoints != null) codePoints[at + i] = codePointOf(cell);
+            if (attrIds != null) attrIds[at + i] = attrIdOf(cell);
+        }
+    }
+
+    @Override
+    public void visitCells(int globalRow, int from, int to, CellVisitor visitor) {
+        for (int col = from; col < to; col++) {
+            long cell = cells[col];
+            visitor.visit(globalRow, col, codePointOf(cell), attrIdOf(cell));
+        }
+    }
+
+    long packedAt(int col) {
+        return cells[col];
+    }
+
+    // Columns up to the last cell that is not an empty cell with default attributes.
+    int contentLength() {
+        int length = width;
+        while (length > 0 && cells[length - 1] == EMPTY_CELL) {
+            length--;
+        }
+        return length;
+    }
+
+    void copyCellsFrom(LineView src, int from, int col, int len) {
+        for (int i = 0; i < len; i++) {
+            cells[col + i] = pack(src.codePointAt(from + i), src.attrIdAt(from + i));
+        }
+        markDirty(col, col + len);
+    }
+
+    void copyTo(int col, long[] dst, int at, int len) {
+        System.arraycopy(cells, col, dst, at, len);
+    }
+
+    void copyFrom(long[] src, int from, int col, int len) {
+        System.arraycopy(src, from, cells, col, len);
+        markDirty(col, col + len);
+    }
+
+    private void markDirty(int from, int to) {
+        if (from < dirtyFrom) dirtyFrom = from;
+        if (to > dirtyTo) dirtyTo = to;
+    }
+
+    boolean isDirty() {
+        return dirtyFrom < dirtyTo;
+    }
+
+    int dirtyFrom() {
+        return dirtyFrom;
+    }
+
+    int dirtyTo() {
+        return dirtyTo;
+    }
+
+    void markClean() {
+        dirtyFrom = width;
+        dirtyTo = 0;
     }
 
     public final class CellRef {
@@ -39,11 +190,11 @@ public final class Line {
         }
 
         public int codePoint() {
-            return codePoints[col];
+            return codePointAt(col);
         }
 
         public TextAttributes attrs() {
-            return attrs[col];
+            return attrsAt(col);
         }
 
         public void set(int codePoint, TextAttributes a) {
@@ -56,23 +207,54 @@ public final class Line {
     }
 
     public void clear() {
-        TextAttributes def = TextAttributes.defaults();
-        for (int i = 0; i < codePoints.length; i++) {
-            codePoints[i] = Cell.EMPTY;
-            attrs[i] = def;
-        }
+        Arrays.fill(cells, 0, width, EMPTY_CELL);
+        markDirty(0, width);
+        wrapped = false;
+    }
+
+    // Erasing through the right edge also drops the soft wrap.
+    void clear(int from, int to) {
+        Arrays.fill(cells, from, to, EMPTY_CELL);
+        markDirty(from, to);
+        if (to == width) wrapped = false;
+    }
+
+    boolean isWrapped() {
+        return wrapped;
+    }
+
+    void setWrapped(boolean wrapped) {
+        this.wrapped = wrapped;
+    }
+
+    void share() {
+        shared = true;
+    }
+
+    boolean isShared() {
+        return shared;
+    }
+
+    // Private copy for a writer, keeping the pending damage.
+    Line unsharedCopy() {
+        Line copy = new Line(Arrays.copyOf(cells, width));
+        copy.dirtyFrom = dirtyFrom;
+        copy.dirtyTo = dirtyTo;
+        copy.wrapped = wrapped;
+        return copy;
     }
 
     public Line deepCopy() {
-        Line copy = new Line(codePoints.length);
-        System.arraycopy(codePoints, 0, copy.codePoints, 0, codePoints.length);
-        System.arraycopy(attrs, 0, copy.attrs, 0, attrs.length);
+        Line copy = new Line(Arrays.copyOf(cells, width));
+        copy.wrapped = wrapped;
         return copy;
     }
 
+    @Override
     public String toPlainString() {
-        StringBuilder sb = new StringBuilder(codePoints.length);
-        for (int cp : codePoints) {
+        StringBuilder sb = new StringBuilder(width);
+        for (int col = 0; col < width; col++) {
+            int cp = codePointOf(cells[col]);
             if (cp <= 0) {
                 sb.append(' ');
             } else {
@@ -85,9 +267,7 @@ public final class Line {
     public Line resizedTo(int newWidth) {
         if (newWidth <= 0) throw new IllegalArgumentException("newWidth must be > 0");
         Line out = new Line(newWidth);
-        int n = Math.min(codePoints.length, newWidth);
-        System.arraycopy(codePoints, 0, out.codePoints, 0, n);
-        System.arraycopy(attrs, 0, out.attrs, 0, n);
+        System.arraycopy(cells, 0, out.cells, 0, Math.min(width, newWidth));
         return out;
     }
 }
@@ -0,0 +1,136 @@
+package org.example.terminalbuffer;
+
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Finds successive non-overlapping matches within one line at a time. Lines are matched as the text
+// getLineAsString shows, except that the continuation cell of a wide character is skipped rather than
+// read as a space, so a match can span wide characters. Instances keep per-line state and scratch
+// buffers and are not thread-safe: each traversal uses its own.
+interface LineSearcher {
+
+    void reset(LineView line);
+
+    // Column of the next match in the current line, or -1.
+    int next();
+
+    static int textAt(LineView line, int col) {
+        int cp = line.codePointAt(col);
+        return cp <= 0 ? ' ' : cp;
+    }
+
+    // Compares code points straight from the line's cells.
+    final class Literal implements LineSearcher {
+        private final int[] needle;
+        private LineView line;
+        private int col;
+
+        Literal(int[] needle) {
+            this.needle = needle;
+        }
+
+        @Override
+        public void reset(LineView line) {
+            this.line = line;
+            this.col = 0;
+        }
+
+        @Override
+        public int next() {
+            int width = line.width();
+            for (int start = col; start < width; start++) {
+                if (line.codePointAt(start) == Cell.CONTINUATION) continue;
+                int end = matchEnd(start, width);
+                if (end >= 0) {
+                    col = end;
+                    return start;
+                }
+            }
+            col = width;
+            return -1;
+        }
+
+        private int matchEnd(int start, int width) {
+            int c = start;
+            for (int cp : needle) {
+                while (c < width && line.codePointAt(c) == Cell.CONTINUATION) c++;
+                if (c == width || textAt(line, c) != cp) return -1;
+                c++;
+            }
+            return c;
+        }
+    }
+
+    // Regular expressions need a CharSequence: the line is decoded into a reused char buffer with a map
+    // from char index back to column, so matching allocates nothing per line.
+    final class Regex implements LineSearcher {
+        private final Matcher matcher;
+        private final LineChars chars = new LineChars();
+
+        Regex(Pattern pattern) {
+            this.matcher = pattern.matcher("");
+        }
+
+        @Override
+        public void reset(LineView line) {
+            chars.load(line);
+            matcher.reset(chars);
+        }
+
+        // An empty match at the end of the text (as for "$") is reported at the line's width.
+        @Override
+        public int next() {
+            return matcher.find() ? chars.colOf[matcher.start()] : -1;
+        }
+    }
+
+    final class LineChars implements CharSequence {
+        private char[] text = new char[0];
+        private int[] colOf = new int[0];
+        private int length;
+
+        void load(LineView line) {
+            int width = line.width();
+            if (text.length < width * 2) {
+                text = new char[width * 2];
+                colOf = new int[width * 2 + 1];
+            }
+            length = 0;
+            for (int col = 0; col < width; col++) {
+                if (line.codePointAt(col) == Cell.CONTINUATION) continue;
+                int cp = textAt(line, col);
+                if (Character.isBmpCodePoint(cp)) {
+                    colOf[length] = col;
+                    text[length++] = (char) cp;
+                } else {
+                    colOf[length] = col;
+                    text[length++] = Character.highSurrogate(cp);
+                    colOf[length] = col;
+                    text[length++] = Character.lowSurrogate(cp);
+                }
+            }
+            colOf[length] = width;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return text[index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(text, start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(text, 0, length);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package org.example.terminalbuffer;
+
+// Read access shared by mutable screen lines and immutable scrollback lines.
+interface LineView {
+    int width();
+
+    int codePointAt(int col);
+
+    int attrIdAt(int col);
+
+    default TextAttributes attrsAt(int col) {
+        return TextAttributes.byId(attrIdAt(col));
+    }
+
+    String toPlainString();
+
+    // Copies len cells starting at col into the arrays starting at index at; either array may be null.
+    default void copyCells(int col, int len, int[] codePoints, int[] attrIds, int at) {
+        for (int i = 0; i < len; i++) {
+            if (codePoints != null) codePoints[at + i] = codePointAt(col + i);
+            if (attrIds != null) attrIds[at + i] = attrIdAt(col + i);
+        }
+    }
+
+    default void visitCells(int globalRow, int from, int to, CellVisitor visitor) {
+        for (int col = from; col < to; col++) {
+            visitor.visit(globalRow, col, codePointAt(col), attrIdAt(col));
+        }
+    }
+}
@@ -0,0 +1,445 @@
+package org.example.terminalbuffer;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntFunction;
+
+// Soft-wrap structure of the scrollback, used to show it at a width other than the one its lines were
+// stored at.
+//
+// Stored lines are never rewritten. Lines joined by soft wraps form a logical line, kept as the position
+// of its first stored line plus each stored line's offset within it; stored lines are measured without
+// trailing empty cells. At display width w a logical line of n cells takes max(1, ceil(n / w)) rows, so
+// the row count only depends on the logical lengths: a Fenwick tree over them recomputes it after a
+// resize in O(longest / w * log) steps without visiting a line. The logical line of a row comes from
+// cumulative row counts anchored at the newest line; pushes extend them in O(1) and reads extend them
+// towards older lines only as far as they reach. Rows are assembled from the stored lines when read. A
+// wide character that straddles a row boundary is split rather than moved to the next row, so row counts
+// stay arithmetic.
+//
+// Arrays are only appended to past the current end and are replaced, not compacted in place, when full,
+// which lets view() share them with a snapshot.
+final class ReflowIndex {
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int MAX_COUNTED_LENGTH = 1 << 16;
+    private static final int CACHE_SIZE = 64;
+    private static final int NONE = Integer.MAX_VALUE;
+    // Logical lines laid out by one fork-join leaf.
+    private static final int LAYOUT_LEAF_LINES = 256;
+
+    // Stored lines [physFirst, physEnd): offset of each within its logical line.
+    private int[] offsets;
+    private int physFirst;
+    private int physEnd;
+
+    // Logical lines [logFirst, logEnd): position of the first stored line and end offset. The newest
+    // line's end is kept in lastEnd and written to ends when the next logical line starts.
+    private int[] starts;
+    private int[] ends;
+    private int logFirst;
+    private int logEnd;
+    private int lastEnd;
+    private boolean open;
+
+    // Cumulative rows for logical lines from cumFrom on: cum[k + 1] - cum[k] is the row count of line k.
+    private int[] cum;
+    private volatile int cumFrom = NONE;
+
+    private int width;
+    private int rows;
+
+    // Stored lines from widthRunStart on were pushed at pushWidth; older ones at other widths.
+    private int pushWidth;
+    private int widthRunStart;
+
+    // Logical lengths; null in views. Length 0 is counted apart, lengths of MAX_COUNTED_LENGTH and more
+    // are listed.
+    private int[] tree;
+    private int counted;
+    private int zeroLengths;
+    private int[] longLengths;
+    private int longCount;
+
+    private int generation;
+    private final Row[] cache = new Row[CACHE_SIZE];
+
+    private record Row(int row, int generation, LineView line) {
+    }
+
+    // All rows, oldest first; wrapped[i] is set when row i continues on the next one.
+    record Rows(CompactLine[] lines, boolean[] wrapped) {
+    }
+
+    ReflowIndex(int width) {
+        this.width = width;
+        this.pushWidth = width;
+        this.offsets = new int[INITIAL_CAPACITY];
+        this.starts = new int[INITIAL_CAPACITY];
+        this.ends = new int[INITIAL_CAPACITY];
+        this.cum = new int[INITIAL_CAPACITY];
+        this.tree = new int[1024 + 1];
+        this.longLengths = new int[4];
+    }
+
+    private ReflowIndex(ReflowIndex live) {
+        this.offsets = live.offsets;
+        this.physFirst = live.physFirst;
+        this.physEnd = live.physEnd;
+        this.starts = live.starts;
+        this.ends = live.ends;
+        this.logFirst = live.logFirst;
+        this.logEnd = live.logEnd;
+        this.lastEnd = live.lastEnd;
+        this.width = live.width;
+        this.rows = live.rows;
+    }
+
+    // Frozen copy for a snapshot, in O(1).
+    ReflowIndex view() {
+        return new ReflowIndex(this);
+    }
+
+    // True when rows differ from stored lines: some stored line was pushed at another width.
+    boolean reflowed() {
+        return physEnd > physFirst && (pushWidth != width || widthRunStart > physFirst);
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    void add(int length, int lineWidth, boolean wrapped) {
+        if (physEnd == offsets.length || logEnd == starts.length) {
+            reallocate();
+        }
+        if (lineWidth != pushWidth) {
+            pushWidth = lineWidth;
+            widthRunStart = physEnd;
+        }
+        if (open && logEnd > logFirst) {
+            int before = length(logEnd - 1);
+            offsets[physEnd++] = lastEnd;
+            lastEnd += length;
+            recount(before, length(logEnd - 1));
+        } else {
+            int k = logEnd;
+            if (k > logFirst && cumFrom < k) {
+                ends[k - 1] = lastEnd;
+                cum[k] = cum[k - 1] + rowsOf(length(k - 1));
+            } else {
+                if (k > logFirst) ends[k - 1] = lastEnd;
+                cum[k] = 0;
+                cumFrom = k;
+            }
+            starts[k] = physEnd;
+            offsets[physEnd++] = 0;
+            logEnd++;
+            lastEnd = length;
+            recount(-1, length);
+        }
+        open = wrapped;
+        generation++;
+    }
+
+    // Drops the oldest stored lines until count remain.
+    void retainLast(int count) {
+        while (physEnd - physFirst > count) {
+            int k = logFirst;
+            int before = length(k);
+            physFirst++;
+            if (physFirst == pieceEnd(k)) {
+                logFirst++;
+                recount(before, -1);
+            } else {
+                recount(before, length(k));
+            }
+        }
+        generation++;
+    }
+
+    void clear() {
+        physFirst = physEnd;
+        logFirst = logEnd;
+        open = false;
+        cumFrom = NONE;
+        tree = new int[1024 + 1];
+        counted = 0;
+        zeroLengths = 0;
+        longCount = 0;
+        rows = 0;
+        generation++;
+    }
+
+    void setWidth(int width) {
+        this.width = width;
+        rows = countRows(width);
+        if (logEnd > logFirst) {
+            cum[logEnd - 1] = 0;
+            cumFrom = logEnd - 1;
+        } else {
+            cumFrom = NONE;
+        }
+        generation++;
+    }
+
+    // Row of the reflowed scrollback; stored(i) returns the i-th retained stored line. Reads may run
+    // in parallel with each other, not with add/retainLast/clear/setWidth.
+    LineView line(int row, IntFunction<LineView> stored) {
+        int slot = row & (CACHE_SIZE - 1);
+        Row cached = cache[slot];
+        if (cached != null && cached.row == row && cached.generation == generation) {
+            return cached.line;
+        }
+        LineView line = build(row, stored);
+        cache[slot] = new Row(row, generation, line);
+        return line;
+    }
+
+    // Lays out every row at the current width. Logical lines never share a row, so ranges of them are
+    // independent: the cumulative row counts are completed first, which gives every range its place in
+    // the result, and the ranges are then filled in parallel on the pool.
+    Rows materialize(IntFunction<LineView> stored, ForkJoinPool pool) {
+        Rows rows = new Rows(new CompactLine[this.rows], new boolean[this.rows]);
+        if (logEnd == logFirst) return rows;
+        logicalAt(0);
+        pool.invoke(new Layout(logFirst, logEnd, rows, stored));
+        return rows;
+    }
+
+    private final class Layout extends RecursiveAction {
+        @java.io.Serial
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final transient Rows rows;
+        private final transient IntFunction<LineView> stored;
+
+        Layout(int from, int to, Rows rows, IntFunction<LineView> stored) {
+            this.from = from;
+            this.to = to;
+            this.rows = rows;
+            this.stored = stored;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LAYOUT_LEAF_LINES) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Layout(from, mid, rows, stored), new Layout(mid, to, rows, stored));
+                return;
+            }
+            for (int k = from; k < to; k++) {
+                int start = startRow(k);
+                int count = rowsOf(length(k));
+                boolean continues = k == logEnd - 1 && open;
+                for (int r = 0; r < count; r++) {
+                    LineView line = layout(k, r, stored);
+                    rows.lines[start + r] = line instanceof CompactLine compact
+                            ? compact.withWidth(width)
+                            : CompactLine.of((Line) line);
+                    rows.wrapped[start + r] = r < count - 1 || continues;
+                }
+            }
+        }
+    }
+
+    private LineView build(int row, IntFunction<LineView> stored) {
+        int k = logicalAt(row);
+        return layout(k, row - startRow(k), stored);
+    }
+
+    // Row r of logical line k.
+    private LineView layout(int k, int r, IntFunction<LineView> stored) {
+        int base = k == logFirst ? offsets[physFirst] : 0;
+        int first = k == logFirst ? physFirst : starts[k];
+        int last = pieceEnd(k);
+        int from = base + r * width;
+
+        if (last - first == 1 && length(k) <= width) {
+            // Fits as stored: served without copying unless the stored line is wider than the display.
+            LineView line = stored.apply(first - physFirst);
+            if (line.width() <= width) return line;
+        }
+
+        int lo = first;
+        int hi = last - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (offsets[mid] <= from) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        int end = end(k);
+        Line out = new Line(width);
+        int col = 0;
+        for (int p = lo; p < last && col < width; p++) {
+            int pieceStart = offsets[p];
+            int pieceStop = p + 1 < last ? offsets[p + 1] : end;
+            int skip = from + col - pieceStart;
+            int n = Math.min(pieceStop - pieceStart - skip, width - col);
+            if (n > 0) {
+                out.copyCellsFrom(stored.apply(p - physFirst), skip, col, n);
+                col += n;
+            }
+        }
+        out.markClean();
+        return out;
+    }
+
+    private int logicalAt(int row) {
+        int last = logEnd - 1;
+        if (last == logFirst) return last;
+        int from = cumFrom;
+        if (from == NONE || startRow(Math.max(from, logFirst + 1)) > row) {
+            from = extendTo(row);
+        }
+        int lo = Math.max(from, logFirst + 1);
+        if (startRow(lo) > row) return logFirst;
+        int hi = last;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (startRow(mid) <= row) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    // Computes cumulative rows back towards the oldest line until the row is covered.
+    private synchronized int extendTo(int row) {
+        int last = logEnd - 1;
+        if (cumFrom == NONE) {
+            if (cum == null) cum = new int[starts.length];
+            cum[last] = 0;
+            cumFrom = last;
+        }
+        int k = Math.max(cumFrom, logFirst + 1);
+        while (k > logFirst + 1 && startRow(k) > row) {
+            cum[k - 1] = cum[k] - rowsOf(length(k - 1));
+            k--;
+        }
+        cumFrom = k;
+        return k;
+    }
+
+    private int startRow(int k) {
+        if (k == logFirst) return 0;
+        int last = logEnd - 1;
+        return rows - (cum[last] + rowsOf(length(last)) - cum[k]);
+    }
+
+    private int end(int k) {
+        return k == logEnd - 1 ? lastEnd : ends[k];
+    }
+
+    // Cells retained of logical line k; only the oldest may have lost stored lines.
+    private int length(int k) {
+        return end(k) - (k == logFirst ? offsets[physFirst] : 0);
+    }
+
+    private int pieceEnd(int k) {
+        return k + 1 < logEnd ? starts[k + 1] : physEnd;
+    }
+
+    private int rowsOf(int length) {
+        return length == 0 ? 1 : (length - 1) / width + 1;
+    }
+
+    private void reallocate() {
+        int physLive = physEnd - physFirst;
+        int logLive = logEnd - logFirst;
+        int[] newOffsets = new int[Math.max(INITIAL_CAPACITY, physLive * 2)];
+        System.arraycopy(offsets, physFirst, newOffsets, 0, physLive);
+        int capacity = Math.max(INITIAL_CAPACITY, logLive * 2);
+        int[] newStarts = new int[capacity];
+        int[] newEnds = new int[capacity];
+        int[] newCum = new int[capacity];
+        for (int i = 0; i < logLive; i++) {
+            newStarts[i] = Math.max(0, starts[logFirst + i] - physFirst);
+        }
+        System.arraycopy(ends, logFirst, newEnds, 0, logLive);
+        int from = cumFrom;
+        if (from != NONE) {
+            int keep = Math.max(from, logFirst);
+            System.arraycopy(cum, keep, newCum, keep - logFirst, logEnd - keep);
+            cumFrom = keep - logFirst;
+        }
+        widthRunStart = Math.max(0, widthRunStart - physFirst);
+        offsets = newOffsets;
+        starts = newStarts;
+        ends = newEnds;
+        cum = newCum;
+        physEnd = physLive;
+        physFirst = 0;
+        logEnd = logLive;
+        logFirst = 0;
+    }
+
+    private void recount(int before, int after) {
+        if (before >= 0) {
+            count(before, -1);
+            rows -= rowsOf(before);
+        }
+        if (after >= 0) {
+            count(after, 1);
+            rows += rowsOf(after);
+        }
+    }
+
+    private void count(int length, int delta) {
+        if (length == 0) {
+            zeroLengths += delta;
+        } else if (length < MAX_COUNTED_LENGTH) {
+            while (length >= tree.length) {
+                // Nodes added between the old and new size cover only empty lengths; the new root covers all.
+                int size = tree.length - 1;
+                tree = Arrays.copyOf(tree, size * 2 + 1);
+                tree[size * 2] = counted;
+            }
+            counted += delta;
+            for (int i = length; i < tree.length; i += i & -i) {
+                tree[i] += delta;
+            }
+        } else if (delta > 0) {
+            if (longCount == longLengths.length) longLengths = Arrays.copyOf(longLengths, longCount * 2);
+            longLengths[longCount++] = length;
+        } else {
+            for (int i = 0; i < longCount; i++) {
+                if (longLengths[i] == length) {
+                    longLengths[i] = longLengths[--longCount];
+                    break;
+                }
+            }
+        }
+    }
+
+    // Sum of max(1, ceil(n / width)) over logical lengths n: a length n contributes one row for every
+    // multiple of width below it.
+    private int countRows(int width) {
+        long total = zeroLengths;
+        int size = tree.length - 1;
+        for (long bound = 0; bound < size; bound += width) {
+            int longer = counted - countUpTo((int) bound);
+            if (longer == 0) break;
+            total += longer;
+        }
+        for (int i = 0; i < longCount; i++) {
+            total += (longLengths[i] - 1) / width + 1;
+        }
+        return (int) total;
+    }
+
+    private int countUpTo(int length) {
+        int sum = 0;
+        for (int i = length; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,80 @@
+package org.example.terminalbuffer;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+// Splittable traversal of the matches in a range of global rows, or in an ascending list of candidate
+// rows. Splitting halves the remaining rows, so parallel streams fan a long history out over the
+// fork-join pool; each half gets its own searcher.
+final class RowSearchSpliterator implements Spliterator<SearchMatch> {
+    private static final int MIN_SPLIT_ROWS = 1024;
+
+    private final IntFunction<LineView> rows;
+    private final Supplier<LineSearcher> searchers;
+    private LineSearcher searcher;
+    // Position in the row range, or index into rowList when there is one.
+    private int pos;
+    private final int end;
+    private final int[] rowList;
+    private boolean rowLoaded;
+
+    RowSearchSpliterator(IntFunction<LineView> rows, Supplier<LineSearcher> searchers, int fromRow, int toRow) {
+        this(rows, searchers, null, fromRow, toRow);
+    }
+
+    RowSearchSpliterator(IntFunction<LineView> rows, Supplier<LineSearcher> searchers, int[] rowList) {
+        this(rows, searchers, rowList, 0, rowList.length);
+    }
+
+    private RowSearchSpliterator(IntFunction<LineView> rows, Supplier<LineSearcher> searchers, int[] rowList,
+                                 int from, int to) {
+        this.rows = rows;
+        this.searchers = searchers;
+        this.rowList = rowList;
+        this.pos = from;
+        this.end = to;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super SearchMatch> action) {
+        if (searcher == null) searcher = searchers.get();
+        while (pos < end) {
+            int row = rowList == null ? pos : rowList[pos];
+            if (!rowLoaded) {
+                searcher.reset(rows.apply(row));
+                rowLoaded = true;
+            }
+            int col = searcher.next();
+            if (col >= 0) {
+                action.accept(new SearchMatch(row, col));
+                return true;
+            }
+            pos++;
+            rowLoaded = false;
+        }
+        return false;
+    }
+
+    @Override
+    public Spliterator<SearchMatch> trySplit() {
+        // A row in progress stays with this half so matches keep their order.
+        if (rowLoaded || end - pos < MIN_SPLIT_ROWS) return null;
+        int mid = (pos + end) >>> 1;
+        RowSearchSpliterator prefix = new RowSearchSpliterator(rows, searchers, rowList, pos, mid);
+        pos = mid;
+        return prefix;
+    }
+
+    // Rows left, not matches: the number of matches is unknown until searched.
+    @Override
+    public long estimateSize() {
+        return end - pos;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+}
@@ -0,0 +1,214 @@
+package org.example.terminalbuffer;
+
+import java.util.concurrent.Executor;
+
+// Bounded ring of scrollback lines stored in fixed-size chunks. Chunks are allocated when the ring
+// grows into them and released once every line in them has been evicted, so a large configured limit
+// costs nothing until it is used. Append and random access are O(1).
+//
+// Optionally, full chunks that fall out of a hot window of recent lines are deflated on a background
+// executor (see ChunkCompressor) and inflated again into a small cache when read.
+final class Scrollback {
+    static final int CHUNK_SHIFT = 8;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final int max;
+
+    // Ring of chunk references; length is a power of two. Copied before the next change once a snapshot
+    // view holds it, so views never see slots reused for newer chunks.
+    private Chunk[] chunks = new Chunk[2];
+    private boolean ringShared;
+    private int headChunk;
+    private int headOffset;
+    private int size;
+
+    // Volatile for snapshot views read on other threads.
+    private volatile ChunkCompressor compressor;
+    private int hotChunks;
+    // Set once evicted lines are spilled to disk: chunks then stay uncompressed so that evicting a line
+    // never has to inflate one on the writer thread.
+    private boolean spilling;
+
+    Scrollback(int max) {
+        this.max = max;
+    }
+
+    int max() {
+        return max;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Chunks entirely older than the newest hotLines lines get compressed on the executor.
+    void enableCompression(int hotLines, Executor executor) {
+        if (hotLines < 0) throw new IllegalArgumentException("hotLines must be >= 0");
+        if (spilling) return;
+        this.compressor = new ChunkCompressor(executor);
+        this.hotChunks = (hotLines + CHUNK_SIZE - 1) >> CHUNK_SHIFT;
+        if (size > 0) {
+            int last = (headOffset + size - 1) >> CHUNK_SHIFT;
+            for (int chunk = 0; chunk <= last - 1 - hotChunks; chunk++) {
+                compressor.submit(chunks[(headChunk + chunk) & (chunks.length - 1)]);
+            }
+        }
+    }
+
+    CompactLine get(int index) {
+        int pos = headOffset + index;
+        return lineAt(chunks[(headChunk + (pos >> CHUNK_SHIFT)) & (chunks.length - 1)], pos & CHUNK_MASK);
+    }
+
+    CompactLine push(CompactLine line) {
+        return push(line, true);
+    }
+
+    // Returns the line that no longer fits: the evicted oldest line, the line itself when the capacity
+    // is zero, or null. Without wantEvicted the evicted line is not read (it may sit in a compressed
+    // chunk) and null is returned.
+    CompactLine push(CompactLine line, boolean wantEvicted) {
+        if (max == 0) return line;
+        CompactLine evicted = size == max ? evictOldest(wantEvicted) : null;
+
+        int pos = headOffset + size;
+        int chunk = pos >> CHUNK_SHIFT;
+        if ((pos & CHUNK_MASK) == 0) {
+            if (chunk == chunks.length) {
+                growRing();
+            } else {
+                ownRing();
+            }
+            chunks[(headChunk + chunk) & (chunks.length - 1)] = new Chunk();
+            if (compressor != null && chunk - 1 - hotChunks >= 0) {
+                compressor.submit(chunks[(headChunk + chunk - 1 - hotChunks) & (chunks.length - 1)]);
+            }
+        }
+        chunks[(headChunk + chunk) & (chunks.length - 1)].lines[pos & CHUNK_MASK] = line;
+        size++;
+        return evicted;
+    }
+
+    // Evicted lines will be wanted from now on. Compression stops, and chunks already compressed are
+    // inflated once here rather than one evicted line at a time later.
+    void keepEvictable() {
+        spilling = true;
+        ChunkCompressor c = compressor;
+        if (c == null) return;
+        c.stop();
+        for (Chunk chunk : chunks) {
+            if (chunk != null) c.restore(chunk);
+        }
+    }
+
+    void clear() {
+        chunks = new Chunk[2];
+        ringShared = false;
+        headChunk = 0;
+        headOffset = 0;
+        size = 0;
+        if (compressor != null) {
+            compressor.invalidate();
+        }
+    }
+
+    int allocatedChunks() {
+        int count = 0;
+        for (Chunk chunk : chunks) {
+            if (chunk != null) count++;
+        }
+        return count;
+    }
+
+    int inflatedChunks() {
+        ChunkCompressor c = compressor;
+        return c == null ? 0 : c.inflations();
+    }
+
+    int compressedChunks() {
+        int count = 0;
+        for (Chunk chunk : chunks) {
+            if (chunk != null && chunk.lines == null) count++;
+        }
+        return count;
+    }
+
+    private CompactLine lineAt(Chunk chunk, int offset) {
+        CompactLine[] lines = chunk.lines;
+        if (lines == null) {
+            lines = compressor.inflate(chunk);
+        }
+        return lines[offset];
+    }
+
+    // Lines of a chunk are not cleared one by one: a compressor may be reading them. The chunk as a
+    // whole is dropped once its last line is evicted.
+    private CompactLine evictOldest(boolean read) {
+        CompactLine evicted = read ? lineAt(chunks[headChunk], headOffset) : null;
+        headOffset++;
+        size--;
+        if (headOffset == CHUNK_SIZE) {
+            ownRing();
+            chunks[headChunk] = null;
+            headChunk = (headChunk + 1) & (chunks.length - 1);
+            headOffset = 0;
+        }
+        return evicted;
+    }
+
+    private void growRing() {
+        Chunk[] grown = new Chunk[chunks.length * 2];
+        int first = chunks.length - headChunk;
+        System.arraycopy(chunks, headChunk, grown, 0, first);
+        System.arraycopy(chunks, 0, grown, first, headChunk);
+        chunks = grown;
+        ringShared = false;
+        headChunk = 0;
+    }
+
+    private void ownRing() {
+        if (ringShared) {
+            chunks = chunks.clone();
+            ringShared = false;
+        }
+    }
+
+    // Read-only view of the lines currently held. Costs O(1) now and at most one copy of the chunk ring
+    // (not of the lines) at the next chunk boundary.
+    View view() {
+        ringShared = true;
+        return new View(chunks, headChunk, headOffset, size);
+    }
+
+    final class View {
+        private final Chunk[] chunks;
+        private final int headChunk;
+        private final int headOffset;
+        private final int size;
+
+        private View(Chunk[] chunks, int headChunk, int headOffset, int size) {
+            this.chunks = chunks;
+            this.headChunk = headChunk;
+            this.headOffset = headOffset;
+            this.size = size;
+        }
+
+        int size() {
+            return size;
+        }
+
+        CompactLine get(int index) {
+            int pos = headOffset + index;
+            return lineAt(chunks[(headChunk + (pos >> CHUNK_SHIFT)) & (chunks.length - 1)], pos & CHUNK_MASK);
+        }
+    }
+
+    static final class Chunk {
+        // Set to null by the compressor after `compressed` has been published.
+        volatile CompactLine[] lines = new CompactLine[CHUNK_SIZE];
+        volatile byte[] compressed;
+        int uncompressedSize;
+        boolean submitted;
+    }
+}
@@ -0,0 +1,242 @@
+package org.example.terminalbuffer;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Trigram index over scrollback lines for literal search.
+//
+// Lines are identified by a sequence number that counts every line ever pushed to scrollback (wrapping
+// int arithmetic, so only differences are compared). The writer only queues (seq, line) pairs and
+// publishes the oldest retained seq; a worker on the executor extracts the trigrams and appends the seq
+// to one posting list per trigram hash bucket. Hash collisions and trigrams that appear in a different
+// order only produce extra candidates, and the caller verifies every candidate against the line, so the
+// index never has to be exact. Postings older than the retained seq are dropped lazily.
+final class ScrollbackIndex {
+    static final int GRAM = 3;
+
+    private static final int BUCKET_BITS = 16;
+    private static final int BUCKET_MASK = (1 << BUCKET_BITS) - 1;
+    private static final int SWEEP_INTERVAL = 1 << 14;
+    private static final int SPACE_GRAM = gramKey(' ', ' ', ' ');
+
+    private final Executor executor;
+    private final Queue<Pending> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private volatile int firstRetained;
+    // Lines pushed before the index was enabled are never indexed.
+    private final int startSeq;
+
+    // Guarded by this.
+    private final Postings[] buckets = new Postings[1 << BUCKET_BITS];
+    private int indexedEnd;
+    private int sinceSweep;
+    private int[] lineBuckets = new int[64];
+
+    private record Pending(int seq, CompactLine line) {
+    }
+
+    ScrollbackIndex(Executor executor, int nextSeq) {
+        this.executor = executor;
+        this.firstRetained = nextSeq;
+        this.startSeq = nextSeq;
+        this.indexedEnd = nextSeq;
+    }
+
+    void add(int seq, CompactLine line) {
+        pending.add(new Pending(seq, line));
+        if (scheduled.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+
+    // Lines with an older seq have left the scrollback.
+    void retainFrom(int seq) {
+        firstRetained = seq;
+    }
+
+    // Global rows (seq - firstSeq) in [0, endSeq - firstSeq) that may contain the needle, ascending. Lines
+    // pushed before the index existed or not yet reached by the worker are always candidates.
+    synchronized int[] candidates(int[] needle, int firstSeq, int endSeq) {
+        int[] bucketIds = queryBuckets(needle);
+        if (bucketIds.length == 0) {
+            return allRows(endSeq - firstSeq);
+        }
+        int before = Math.max(0, startSeq - firstSeq);
+        int from = indexedEnd - firstSeq > 0 ? indexedEnd : firstSeq;
+        int unindexed = endSeq - from;
+
+        Postings shortest = null;
+        for (int bucket : bucketIds) {
+            Postings p = buckets[bucket];
+            if (p == null) {
+                shortest = null;
+                break;
+            }
+            p.prune(firstSeq);
+            if (shortest == null || p.size() < shortest.size()) shortest = p;
+        }
+
+        int[] rows = new int[before + (shortest == null ? 0 : shortest.size()) + unindexed];
+        int n = 0;
+        while (n < before) {
+            rows[n] = n;
+            n++;
+        }
+        if (shortest != null) {
+            for (int i = shortest.head; i < shortest.end; i++) {
+                int seq = shortest.seqs[i];
+                if (seq - from >= 0) break;
+                if (inAll(bucketIds, seq)) rows[n++] = seq - firstSeq;
+            }
+        }
+        for (int seq = from; seq != endSeq; seq++) {
+            rows[n++] = seq - firstSeq;
+        }
+        return Arrays.copyOf(rows, n);
+    }
+
+    private boolean inAll(int[] bucketIds, int seq) {
+        for (int bucket : bucketIds) {
+            if (!buckets[bucket].contains(seq)) return false;
+        }
+        return true;
+    }
+
+    private static int[] allRows(int count) {
+        int[] rows = new int[count];
+        for (int i = 0; i < count; i++) rows[i] = i;
+        return rows;
+    }
+
+    private static int[] queryBuckets(int[] needle) {
+        int[] ids = new int[Math.max(0, needle.length - GRAM + 1)];
+        int n = 0;
+        for (int i = 0; i + GRAM <= needle.length; i++) {
+            int key = gramKey(needle[i], needle[i + 1], needle[i + 2]);
+            // All-space grams are not indexed (see indexLine), so they cannot narrow the search.
+            if (key != SPACE_GRAM) ids[n++] = bucketOf(key);
+        }
+        ids = Arrays.copyOf(ids, n);
+        Arrays.sort(ids);
+        int distinct = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (i == 0 || ids[i] != ids[i - 1]) ids[distinct++] = ids[i];
+        }
+        return Arrays.copyOf(ids, distinct);
+    }
+
+    private void drain() {
+        Pending p;
+        while ((p = pending.poll()) != null) {
+            synchronized (this) {
+                indexLine(p.seq, p.line);
+                indexedEnd = p.seq + 1;
+                if (++sinceSweep == SWEEP_INTERVAL) {
+                    sweep();
+                }
+            }
+        }
+        scheduled.set(false);
+        if (!pending.isEmpty() && scheduled.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+
+    // Text as search sees it: continuation cells skipped, empty cells as spaces. Past the line's content
+    // only the first two padding cells can start a gram that is not all spaces.
+    private void indexLine(int seq, CompactLine line) {
+        int limit = Math.min(line.width(), line.length() + GRAM - 1);
+        int a = -1;
+        int b = -1;
+        int count = 0;
+        for (int col = 0; col < limit; col++) {
+            if (line.codePointAt(col) == Cell.CONTINUATION) continue;
+            int c = LineSearcher.textAt(line, col);
+            if (a >= 0) {
+                int key = gramKey(a, b, c);
+                if (key != SPACE_GRAM) {
+                    if (count == lineBuckets.length) lineBuckets = Arrays.copyOf(lineBuckets, count * 2);
+                    lineBuckets[count++] = bucketOf(key);
+                }
+            }
+            a = b;
+            b = c;
+        }
+        int firstSeq = firstRetained;
+        for (int i = 0; i < count; i++) {
+            int bucket = lineBuckets[i];
+            Postings postings = buckets[bucket];
+            if (postings == null) {
+                postings = buckets[bucket] = new Postings();
+            }
+            postings.add(seq, firstSeq);
+        }
+    }
+
+    // Buckets that stop receiving lines would otherwise keep their stale postings forever.
+    private void sweep() {
+        sinceSweep = 0;
+        int firstSeq = firstRetained;
+        for (int i = 0; i < buckets.length; i++) {
+            Postings p = buckets[i];
+            if (p == null) continue;
+            p.prune(firstSeq);
+            if (p.size() == 0) buckets[i] = null;
+        }
+    }
+
+    private static int gramKey(int a, int b, int c) {
+        return a * 0x9E3779B1 ^ Integer.rotateLeft(b * 0x85EBCA77, 11) ^ Integer.rotateLeft(c * 0xC2B2AE3D, 22);
+    }
+
+    private static int bucketOf(int key) {
+        return (key ^ key >>> BUCKET_BITS) & BUCKET_MASK;
+    }
+
+    // Ascending seqs in seqs[head, end).
+    private static final class Postings {
+        int[] seqs = new int[4];
+        int head;
+        int end;
+
+        int size() {
+            return end - head;
+        }
+
+        void add(int seq, int firstSeq) {
+            if (end > head && seqs[end - 1] == seq) return;
+            if (end == seqs.length) {
+                prune(firstSeq);
+                if (head > 0 && size() <= seqs.length / 2) {
+                    System.arraycopy(seqs, head, seqs, 0, size());
+                    end -= head;
+                    head = 0;
+                } else {
+                    seqs = Arrays.copyOf(seqs, seqs.length * 2);
+                }
+            }
+            seqs[end++] = seq;
+        }
+
+        void prune(int firstSeq) {
+            while (head < end && seqs[head] - firstSeq < 0) head++;
+        }
+
+        boolean contains(int seq) {
+            int lo = head;
+            int hi = end - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int d = seqs[mid] - seq;
+                if (d == 0) return true;
+                if (d < 0) lo = mid + 1;
+                else hi = mid - 1;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package org.example.terminalbuffer;
+
+// Start of a search match: a global row as used by getLineAsString and the column of its first cell.
+// An empty regex match at the end of a line (such as "$") has the line's width as its column.
+public record SearchMatch(int globalRow, int col) {
+}
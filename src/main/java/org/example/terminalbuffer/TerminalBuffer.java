@@ -1,24 +1,77 @@
 package org.example.terminalbuffer;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public final class TerminalBuffer implements AutoCloseable {
+    private static final int EXPORT_BUFFER_BYTES = 64 * 1024;
 
-public final class TerminalBuffer {
     private int width;
     private int height;
     private final int scrollbackMax;
 
     private Line[] screen;
     private int screenTopIndex;
-
-    private final Line[] scrollbackStore;
-    private int scrollbackStart;
-    private int scrollbackSize;
+    // Scrolling region as screen rows [regionTop, regionBottom); the whole screen unless set.
+    private int regionTop;
+    private int regionBottom;
+
+    // While the alternate screen is shown, the main screen waits here with its cursor and attributes;
+    // otherwise this holds the alternate screen, allocated on first use and dropped by a resize.
+    private Line[] otherScreen;
+    private int otherTopIndex;
+    private boolean alternateActive;
+    private int savedCursorCol;
+    private int savedCursorRow;
+    private TextAttributes savedAttrs;
+
+    private final Scrollback scrollback;
+    private DiskScrollback spill;
+    // Soft-wrap structure of the stored lines; rows are read through it once the width has changed.
+    private final ReflowIndex reflow;
+
+    // Counts every line pushed to scrollback (wrapping); identifies lines for the search index.
+    private int historySeq;
+    private ScrollbackIndex searchIndex;
 
     private int cursorCol;
     private int cursorRow;
+    // With autowrap, printing in the last column leaves the cursor there with a wrap pending: the next
+    // printed character starts the following row. Any cursor movement or erase cancels it.
+    private boolean autoWrap;
+    private boolean wrapPending;
 
     private TextAttributes currentAttrs = TextAttributes.defaults();
 
+    private final CellQueue carry = new CellQueue();
+
+    // Bumped by every content change; lets snapshot() hand out the previous snapshot when nothing changed.
+    private long modCount;
+    private TerminalSnapshot lastSnapshot;
+
+    // Damage not yet collected; per-line dirty ranges live in the lines themselves.
+    private boolean fullRedraw = true;
+    private int scrolledLines;
+    // Rows [movedFrom, movedTo) hold lines moved there by a region scroll.
+    private int movedFrom;
+    private int movedTo;
+    private final Damage damage = new Damage();
+
     public TerminalBuffer(int width, int height, int scrollbackMaxLines) {
         if (width <= 0) throw new IllegalArgumentException("width must be > 0");
         if (height <= 0) throw new IllegalArgumentException("height must be > 0");
@@ -33,10 +86,10 @@ public final class TerminalBuffer {
             screen[i] = new Line(width);
         }
         this.screenTopIndex = 0;
+        this.regionBottom = height;
 
-        this.scrollbackStore = new Line[scrollbackMaxLines == 0 ? 1 : scrollbackMaxLines];
-        this.scrollbackStart = 0;
-        this.scrollbackSize = 0;
+        this.scrollback = new Scrollback(scrollbackMaxLines);
+        this.reflow = new ReflowIndex(width);
 
         this.cursorCol = 0;
         this.cursorRow = 0;
@@ -54,8 +107,84 @@ public final class TerminalBuffer {
         return scrollbackMax;
     }
 
+    // Includes lines spilled to disk, so that global rows 0..scrollbackSize()-1 are history. After the
+    // width changed, history is counted in rows of the current width.
     public int scrollbackSize() {
-        return scrollbackSize;
+        return reflow.reflowed() ? reflow.rows() : storedLines();
+    }
+
+    private int storedLines() {
+        return spilledLines() + scrollback.size();
+    }
+
+    private LineView storedLine(int index) {
+        int spilled = spilledLines();
+        return index < spilled ? spill.get(index) : scrollback.get(index - spilled);
+    }
+
+    // Lines evicted from the in-memory scrollback are appended to memory-mapped segment files in a new
+    // temporary directory under the given one instead of being dropped. They stay readable by global row.
+    public void enableDiskSpill(Path directory) {
+        Objects.requireNonNull(directory);
+        if (spill != null) throw new IllegalStateException("disk spill is already enabled");
+        spill = new DiskScrollback(directory, DiskScrollback.DEFAULT_LINES_PER_SEGMENT, DiskScrollback.DEFAULT_SEGMENT_BYTES);
+        scrollback.keepEvictable();
+    }
+
+    // Compresses scrollback chunks older than the newest hotLines lines on a shared background thread.
+    // Does nothing once disk spill is enabled: every chunk is then headed for disk.
+    public void enableColdCompression(int hotLines) {
+        enableColdCompression(hotLines, BackgroundExecutor.INSTANCE);
+    }
+
+    public void enableColdCompression(int hotLines, Executor executor) {
+        Objects.requireNonNull(executor);
+        scrollback.enableCompression(hotLines, executor);
+    }
+
+    // Maintains a trigram index of scrollback lines on a shared background thread so that literal searches
+    // of three or more characters only verify candidate rows. Lines already in scrollback are not indexed
+    // and are always verified.
+    public void enableSearchIndex() {
+        enableSearchIndex(BackgroundExecutor.INSTANCE);
+    }
+
+    public void enableSearchIndex(Executor executor) {
+        Objects.requireNonNull(executor);
+        if (searchIndex != null) throw new IllegalStateException("search index is already enabled");
+        searchIndex = new ScrollbackIndex(executor, historySeq);
+    }
+
+    // Releases the disk tier, if any, and deletes its files.
+    @Override
+    public void close() {
+        if (spill != null) {
+            spill.close();
+            spill = null;
+        }
+    }
+
+    private int spilledLines() {
+        return spill == null ? 0 : spill.size();
+    }
+
+    private void pushToScrollback(CompactLine line, boolean wrapped) {
+        modCount++;
+        CompactLine dropped = scrollback.push(line, spill != null);
+        if (dropped != null && spill != null) {
+            spill.append(dropped);
+        }
+        reflow.add(line.length(), line.width(), wrapped);
+        reflow.retainLast(storedLines());
+        int seq = historySeq++;
+        if (searchIndex != null) {
+            searchIndex.add(seq, line);
+            searchIndex.retainFrom(firstHistorySeq());
+        }
+    }
+
+    private int firstHistorySeq() {
+        return historySeq - storedLines();
     }
 
     public TextAttributes currentAttributes() {
@@ -89,57 +218,309 @@ public final class TerminalBuffer {
     public void setCursor(int col, int row) {
         cursorCol = clamp(col, 0, width - 1);
         cursorRow = clamp(row, 0, height - 1);
+        wrapPending = false;
     }
 
     public void moveCursorUp(int n) {
         requireNonNegative(n);
         cursorRow = clamp(cursorRow - n, 0, height - 1);
+        wrapPending = false;
     }
 
     public void moveCursorDown(int n) {
         requireNonNegative(n);
         cursorRow = clamp(cursorRow + n, 0, height - 1);
+        wrapPending = false;
     }
 
     public void moveCursorLeft(int n) {
         requireNonNegative(n);
         cursorCol = clamp(cursorCol - n, 0, width - 1);
+        wrapPending = false;
     }
 
     public void moveCursorRight(int n) {
         requireNonNegative(n);
         cursorCol = clamp(cursorCol + n, 0, width - 1);
+        wrapPending = false;
+    }
+
+    public boolean isAutoWrap() {
+        return autoWrap;
+    }
+
+    // Off by default: write() then keeps overwriting the last column. With autowrap on (as VtParser sets
+    // it, like DECAWM in a terminal), text continues on the next row, which is marked as soft-wrapped.
+    public void setAutoWrap(boolean autoWrap) {
+        this.autoWrap = autoWrap;
+        wrapPending = false;
     }
 
     public int totalLines() {
-        return scrollbackSize + height;
+        return scrollbackSize() + height;
     }
 
     private int physicalScreenIndex(int logicalRow) {
         return (screenTopIndex + logicalRow) % height;
     }
 
-    private Line screenLine(int logicalRow) {
+    Line screenLine(int logicalRow) {
         return screen[physicalScreenIndex(logicalRow)];
     }
 
-    private void pushToScrollback(Line line) {
-        if (scrollbackMax == 0) return;
+    // Every change to a screen line goes through here so that a line held by a snapshot is copied first.
+    private Line writableLine(int logicalRow) {
+        modCount++;
+        int index = physicalScreenIndex(logicalRow);
+        Line line = screen[index];
+        if (line.isShared()) {
+            line = line.unsharedCopy();
+            screen[index] = line;
+        }
+        return line;
+    }
+
+    private void clearLine(int logicalRow) {
+        modCount++;
+        int index = physicalScreenIndex(logicalRow);
+        if (screen[index].isShared()) {
+            screen[index] = new Line(width);
+        }
+        screen[index].clear();
+    }
+
+    // Scrolls the screen up by n lines as if n empty lines were added at the bottom. Lines leave the top
+    // in order and enter scrollback in compact form; their screen lines are cleared and reused as the new
+    // bottom lines. Lines that later pushes of the same call would evict again are never encoded, so the
+    // work is O(min(n, height) + retained lines).
+    public void scrollUp(int n) {
+        requireNonNegative(n);
+        if (n == 0) return;
+
+        int fromScreen = Math.min(n, height);
+        // With a disk tier nothing is discarded: every line ends up in memory or on disk. The alternate
+        // screen never feeds scrollback.
+        int discarded = alternateActive ? n : spill != null ? 0 : Math.max(0, n - scrollbackMax);
+        if (!alternateActive && spill == null && scrollbackMax > 0 && n - discarded == scrollbackMax
+                && scrollback.size() > 0) {
+            // Everything currently in scrollback would be evicted: release it in one go.
+            scrollback.clear();
+            reflow.clear();
+        }
+        for (int i = 0; i < fromScreen; i++) {
+            if (i >= discarded) {
+                Line line = screenLine(i);
+                pushToScrollback(CompactLine.of(line), line.isWrapped());
+            }
+            clearLine(i);
+        }
+        if (n > Math.max(fromScreen, discarded)) {
+            CompactLine blank = CompactLine.blank(width);
+            for (int i = Math.max(fromScreen, discarded); i < n; i++) {
+                pushToScrollback(blank, false);
+            }
+        }
+        screenTopIndex = (screenTopIndex + fromScreen) % height;
+        scrolledLines = Math.min(scrolledLines + fromScreen, height);
+        movedFrom = Math.max(0, movedFrom - fromScreen);
+        movedTo = Math.max(0, movedTo - fromScreen);
+    }
+
+    public boolean isAlternateScreen() {
+        return alternateActive;
+    }
 
-        if (scrollbackSize < scrollbackMax) {
-            int idx = (scrollbackStart + scrollbackSize) % scrollbackStore.length;
-            scrollbackStore[idx] = line;
-            scrollbackSize++;
+    // Switches to the alternate screen as full-screen programs do (xterm mode 1049): the cursor and
+    // attributes are saved, and the alternate screen starts out empty with the cursor where it was. The
+    // screens are swapped by reference; only the cells of the alternate screen are cleared.
+    public void enterAlternateScreen() {
+        if (alternateActive) return;
+        if (otherScreen == null) {
+            otherScreen = new Line[height];
+            for (int i = 0; i < height; i++) {
+                otherScreen[i] = new Line(width);
+            }
+            otherTopIndex = 0;
+        }
+        savedCursorCol = cursorCol;
+        savedCursorRow = cursorRow;
+        savedAttrs = currentAttrs;
+        wrapPending = false;
+        swapScreens();
+        alternateActive = true;
+        for (int row = 0; row < height; row++) {
+            clearLine(row);
+        }
+    }
+
+    // Returns to the main screen as it was left and restores the saved cursor and attributes.
+    public void exitAlternateScreen() {
+        if (!alternateActive) return;
+        swapScreens();
+        alternateActive = false;
+        cursorCol = savedCursorCol;
+        cursorRow = savedCursorRow;
+        currentAttrs = savedAttrs;
+        wrapPending = false;
+    }
+
+    private void swapScreens() {
+        Line[] lines = screen;
+        screen = otherScreen;
+        otherScreen = lines;
+        int top = screenTopIndex;
+        screenTopIndex = otherTopIndex;
+        otherTopIndex = top;
+        fullRedraw = true;
+        modCount++;
+    }
+
+    public int scrollRegionTop() {
+        return regionTop;
+    }
+
+    public int scrollRegionBottom() {
+        return regionBottom;
+    }
+
+    // Restricts scrolling to screen rows [top, bottom): line feeds on the last row of the region and the
+    // region operations below move only those rows. Only a region covering the whole screen sends lines
+    // to scrollback. The cursor does not move.
+    public void setScrollRegion(int top, int bottom) {
+        if (top < 0 || bottom > height || bottom - top < 2) {
+            throw new IllegalArgumentException("invalid scroll region: [" + top + ", " + bottom + ")");
+        }
+        regionTop = top;
+        regionBottom = bottom;
+    }
+
+    public void resetScrollRegion() {
+        regionTop = 0;
+        regionBottom = height;
+    }
+
+    private boolean regionIsScreen() {
+        return regionTop == 0 && regionBottom == height;
+    }
+
+    // Scrolls the region up by n lines; n empty lines enter at its bottom.
+    public void scrollRegionUp(int n) {
+        requireNonNegative(n);
+        if (n == 0) return;
+        if (regionIsScreen()) {
+            scrollUp(n);
         } else {
-            scrollbackStore[scrollbackStart] = line;
-            scrollbackStart = (scrollbackStart + 1) % scrollbackStore.length;
+            shiftRows(regionTop, regionBottom, n);
         }
     }
 
-    private void scrollUpOneLine() {
-        pushToScrollback(screenLine(0).deepCopy());
-        screenTopIndex = (screenTopIndex + 1) % height;
-        screenLine(height - 1).clear();
+    // Scrolls the region down by n lines; n empty lines enter at its top and nothing goes to scrollback.
+    public void scrollRegionDown(int n) {
+        requireNonNegative(n);
+        if (n == 0) return;
+        shiftRows(regionTop, regionBottom, -n);
+    }
+
+    // Inserts n empty lines at the cursor row, pushing the rows below it down within the region. Does
+    // nothing when the cursor is outside the region.
+    public void insertLines(int n) {
+        requireNonNegative(n);
+        if (n == 0 || cursorRow < regionTop || cursorRow >= regionBottom) return;
+        shiftRows(cursorRow, regionBottom, -n);
+    }
+
+    // Deletes n lines at the cursor row, pulling the rows below it up within the region; empty lines
+    // enter at the bottom of the region. Does nothing when the cursor is outside the region.
+    public void deleteLines(int n) {
+        requireNonNegative(n);
+        if (n == 0 || cursorRow < regionTop || cursorRow >= regionBottom) return;
+        shiftRows(cursorRow, regionBottom, n);
+    }
+
+    // Moves the lines of rows [top, bottom) up by n rows, or down when n is negative. The lines pushed out
+    // come back cleared at the other end, so only references move and only the exposed rows are written.
+    // The rows are rotated in place with three reversals, or, when that touches fewer references, the
+    // whole ring is rotated by moving screenTopIndex and the rows outside the range are rotated back.
+    // Either way the cost is O(min(bottom - top, height - (bottom - top) + |n|)) plus the cleared rows.
+    private void shiftRows(int top, int bottom, int n) {
+        modCount++;
+        int size = bottom - top;
+        int k = Math.min(Math.abs(n), size);
+        if (k < size) {
+            int outside = height - size + k;
+            if (outside < size) {
+                if (n > 0) {
+                    screenTopIndex = (screenTopIndex + k) % height;
+                    rotateRows(bottom - k, outside, outside - k);
+                } else {
+                    screenTopIndex = (screenTopIndex + height - k) % height;
+                    rotateRows(bottom, outside, k);
+                }
+            } else {
+                rotateRows(top, size, n > 0 ? k : size - k);
+            }
+            movedFrom = movedFrom < movedTo ? Math.min(movedFrom, top) : top;
+            movedTo = Math.max(movedTo, bottom);
+        }
+        int exposed = n > 0 ? bottom - k : top;
+        for (int row = exposed; row < exposed + k; row++) {
+            clearLine(row);
+        }
+        // Soft wraps into rows that now hold other lines no longer join anything.
+        breakWrap(top - 1);
+        breakWrap(bottom - 1);
+        if (n > 0) breakWrap(bottom - k - 1);
+    }
+
+    // Rotates the lines of the count rows starting at row left by k. Rows may run past the bottom of the
+    // screen and continue at the top.
+    private void rotateRows(int row, int count, int k) {
+        reverseRows(row, row + k);
+        reverseRows(row + k, row + count);
+        reverseRows(row, row + count);
+    }
+
+    private void reverseRows(int from, int to) {
+        for (int i = from, j = to - 1; i < j; i++, j--) {
+            int a = physicalScreenIndex(i % height);
+            int b = physicalScreenIndex(j % height);
+            Line t = screen[a];
+            screen[a] = screen[b];
+            screen[b] = t;
+        }
+    }
+
+    private void breakWrap(int row) {
+        if (row >= 0 && row < height && screenLine(row).isWrapped()) {
+            writableLine(row).setWrapped(false);
+        }
+    }
+
+    // Returns the screen changes since the previous call and starts tracking afresh. The returned
+    // instance is owned by this buffer and overwritten by the next call.
+    public Damage collectDamage() {
+        return collectDamage(damage);
+    }
+
+    public Damage collectDamage(Damage out) {
+        Objects.requireNonNull(out);
+        out.reset(height, fullRedraw, fullRedraw ? 0 : scrolledLines);
+        for (int row = 0; row < height; row++) {
+            Line line = screenLine(row);
+            if (fullRedraw) {
+                out.setRow(row, 0, width);
+            } else if (row >= movedFrom && row < movedTo) {
+                out.setRow(row, 0, width);
+            } else if (line.isDirty()) {
+                out.setRow(row, line.dirtyFrom(), line.dirtyTo());
+            }
+            line.markClean();
+        }
+        fullRedraw = false;
+        scrolledLines = 0;
+        movedFrom = 0;
+        movedTo = 0;
+        return out;
     }
 
     private static int clamp(int v, int min, int max) {
@@ -153,147 +534,323 @@ public final class TerminalBuffer {
     }
 
     private static int cellWidth(int codePoint) {
-        // Simple heuristic: treat emoji and CJK as width 2.
-        // This is not perfect, but acceptable for the bonus.
-        Character.UnicodeBlock block = Character.UnicodeBlock.of(codePoint);
-        if (block == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS
-                || block == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS_EXTENSION_A
-                || block == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS_EXTENSION_B
-                || block == Character.UnicodeBlock.CJK_COMPATIBILITY_IDEOGRAPHS
-                || block == Character.UnicodeBlock.HIRAGANA
-                || block == Character.UnicodeBlock.KATAKANA
-                || block == Character.UnicodeBlock.HANGUL_SYLLABLES
-                || block == Character.UnicodeBlock.HANGUL_JAMO
-                || block == Character.UnicodeBlock.HANGUL_COMPATIBILITY_JAMO) {
-            return 2;
-        }
+        // Zero-width and control characters still occupy their own cell: a cell holds one code point.
+        return CharWidth.of(codePoint) == 2 ? 2 : 1;
+    }
 
-        // Emoji ranges (rough)
-        if ((codePoint >= 0x1F300 && codePoint <= 0x1FAFF) || (codePoint >= 0x2600 && codePoint <= 0x26FF)) {
-            return 2;
-        }
+    public void write(CharSequence text) {
+        if (text == null || text.isEmpty()) return;
+        writeChars(text, 0, text.length());
+    }
 
-        return 1;
+    public void write(char[] chars, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, chars.length);
+        if (length == 0) return;
+        writeChars(CharBuffer.wrap(chars), offset, offset + length);
     }
 
-    public void write(String text) {
-        if (text == null || text.isEmpty()) return;
+    // Decodes UTF-8 from the buffer's position up to its limit. An incomplete sequence at the end is
+    // left unconsumed so the caller can compact the buffer and append the rest; malformed bytes are
+    // written as U+FFFD.
+    public void write(ByteBuffer utf8) {
+        utf8.position(writeUtf8(utf8, utf8.position(), utf8.limit()));
+    }
 
-        int i = 0;
-        while (i < text.length()) {
-            int cp = text.codePointAt(i);
+    // Writes UTF-8 between the absolute indices and returns the index it stopped at: end, the start of
+    // an incomplete trailing sequence, or just past a character that could not be placed.
+    int writeUtf8(ByteBuffer utf8, int from, int end) {
+        int attrId = currentAttrs.id();
+        int i = from;
+        while (i < end) {
+            if (utf8.get(i) >= 0) {
+                int runEnd = AsciiScan.asciiRunEnd(utf8, i + 1, end);
+                putAsciiRun(utf8, i, runEnd, attrId);
+                i = runEnd;
+                continue;
+            }
+            int decoded = Utf8.decode(utf8, i, end);
+            if (decoded == Utf8.INCOMPLETE) break;
+            i += Utf8.length(decoded);
+            if (!writeCodePoint(Utf8.codePoint(decoded), attrId)) break;
+        }
+        return i;
+    }
+
+    private void writeChars(CharSequence text, int from, int to) {
+        int attrId = currentAttrs.id();
+        int i = from;
+        while (i < to) {
+            int runEnd = singleWidthRunEnd(text, i, to);
+            if (runEnd > i) {
+                putRun(text, i, runEnd, attrId);
+                i = runEnd;
+                continue;
+            }
+            int cp = Character.codePointAt(text, i);
             i += Character.charCount(cp);
+            if (!writeCodePoint(cp, attrId)) return;
+        }
+    }
 
-            int w = cellWidth(cp);
+    private static int singleWidthRunEnd(CharSequence text, int from, int to) {
+        int i = from;
+        while (i < to) {
+            char c = text.charAt(i);
+            if (Character.isSurrogate(c) || CharWidth.of(c) == 2) break;
+            i++;
+        }
+        return i;
+    }
 
-            if (w == 1) {
-                if (cursorCol >= width) break;
-                Line line = screenLine(cursorRow);
-                line.setCell(cursorCol, cp, currentAttrs);
-                cursorCol = clamp(cursorCol + 1, 0, width - 1);
+    // A run of single-width characters goes into the current line in one copy per row. Without
+    // autowrap, characters past the right edge keep overwriting the last column, so only the final one
+    // of them survives there.
+    private void putRun(CharSequence text, int from, int to, int attrId) {
+        while (true) {
+            wrapIfPending();
+            Line line = writableLine(cursorRow);
+            int n = to - from;
+            int avail = width - cursorCol;
+            if (n <= avail) {
+                line.setRun(cursorCol, text, from, to, attrId);
+                advance(n);
+            } else if (autoWrap) {
+                line.setRun(cursorCol, text, from, from + avail, attrId);
+                advance(avail);
+                from += avail;
+                continue;
             } else {
-                // need 2 cells
-                if (cursorCol == width - 1) {
-                    // no space: move to next line start (like wrap)
-                    cursorCol = 0;
-                    cursorRow++;
-                    if (cursorRow >= height) {
-                        scrollUpOneLine();
-                        cursorRow = height - 1;
-                    }
-                }
-                if (cursorCol >= width - 1) break;
-
-                Line line = screenLine(cursorRow);
-                line.setCell(cursorCol, cp, currentAttrs);
-                line.setCell(cursorCol + 1, Cell.CONTINUATION, currentAttrs);
-
-                cursorCol += 2;
-                if (cursorCol >= width) {
-                    cursorCol = 0;
-                    cursorRow++;
-                    if (cursorRow >= height) {
-                        scrollUpOneLine();
-                        cursorRow = height - 1;
-                    }
-                }
+                line.setRun(cursorCol, text, from, from + avail - 1, attrId);
+                line.setCell(width - 1, text.charAt(to - 1), attrId);
+                cursorCol = width - 1;
             }
+            return;
         }
     }
 
-    public void insert(String text) {
-        if (text == null || text.isEmpty()) return;
+    private void putAsciiRun(ByteBuffer bytes, int from, int to, int attrId) {
+        while (true) {
+            wrapIfPending();
+            Line line = writableLine(cursorRow);
+            int n = to - from;
+            int avail = width - cursorCol;
+            if (n <= avail) {
+                line.setAsciiRun(cursorCol, bytes, from, to, attrId);
+                advance(n);
+            } else if (autoWrap) {
+                line.setAsciiRun(cursorCol, bytes, from, from + avail, attrId);
+                advance(avail);
+                from += avail;
+                continue;
+            } else {
+                line.setAsciiRun(cursorCol, bytes, from, from + avail - 1, attrId);
+                line.setCell(width - 1, bytes.get(to - 1), attrId);
+                cursorCol = width - 1;
+            }
+            return;
+        }
+    }
 
-        int i = 0;
-        while (i < text.length()) {
-            int cp = text.codePointAt(i);
-            i += Character.charCount(cp);
+    // Moves the cursor past n printed cells; reaching the right edge leaves it on the last column.
+    private void advance(int n) {
+        cursorCol += n;
+        if (cursorCol >= width) {
+            cursorCol = width - 1;
+            wrapPending = autoWrap;
+        }
+    }
 
-            int w = cellWidth(cp);
-            if (w == 1) {
-                insertOneCell(cp, currentAttrs);
-            } else {
-                insertWide(cp, currentAttrs);
+    private void wrapIfPending() {
+        if (wrapPending) {
+            wrapToNextLine();
+        }
+    }
+
+    void writeCodePoint(int cp) {
+        writeCodePoint(cp, currentAttrs.id());
+    }
+
+    private boolean writeCodePoint(int cp, int attrId) {
+        wrapIfPending();
+        if (cellWidth(cp) == 1) {
+            writableLine(cursorRow).setCell(cursorCol, cp, attrId);
+            advance(1);
+            return true;
+        }
+
+        // need 2 cells
+        if (cursorCol == width - 1) {
+            // no space: move to next line start (like wrap)
+            wrapToNextLine();
+        }
+        if (cursorCol >= width - 1) return false;
+
+        Line line = writableLine(cursorRow);
+        line.setCell(cursorCol, cp, attrId);
+        line.setCell(cursorCol + 1, Cell.CONTINUATION, attrId);
+
+        if (autoWrap) {
+            advance(2);
+        } else {
+            cursorCol += 2;
+            if (cursorCol >= width) {
+                wrapToNextLine();
             }
         }
+        return true;
     }
 
-    private void insertOneCell(int codePoint, TextAttributes attrs) {
-        int carryCp = codePoint;
-        TextAttributes carryAttrs = attrs;
+    private void wrapToNextLine() {
+        writableLine(cursorRow).setWrapped(true);
+        nextLine();
+    }
 
-        while (true) {
-            Line line = screenLine(cursorRow);
+    private void nextLine() {
+        cursorCol = 0;
+        lineFeed();
+    }
 
-            int overflowCp = line.codePointAt(width - 1);
-            TextAttributes overflowAttrs = line.attrsAt(width - 1);
+    public void insert(CharSequence text) {
+        if (text == null || text.isEmpty()) return;
 
-            for (int col = width - 1; col > cursorCol; col--) {
-                line.setCell(col, line.codePointAt(col - 1), line.attrsAt(col - 1));
+        int attrId = currentAttrs.id();
+        carry.clear();
+        for (int i = 0; i < text.length(); ) {
+            int cp = Character.codePointAt(text, i);
+            i += Character.charCount(cp);
+            if (cellWidth(cp) == 1) {
+                carry.add(Line.pack(cp, attrId));
+            } else if (width > 1) {
+                carry.add(Line.pack(cp, attrId));
+                carry.add(Line.pack(Cell.CONTINUATION, attrId));
             }
+        }
+        if (carry.isEmpty()) return;
+        insertCarry();
+    }
 
-            line.setCell(cursorCol, carryCp, carryAttrs);
+    // The inserted cells are queued in front of the carry chain. On each row the displaced tail goes to
+    // the back of the queue and the row is refilled from the front with block copies; trailing empty
+    // cells absorb the shift, so the chain stops at the first row that had room. Work is linear in the
+    // cells moved.
+    private void insertCarry() {
+        int insertedLeft = carry.size();
+        int row = cursorRow;
+        int col = cursorCol;
+        int endRow = -1;
+        int endCol = 0;
 
-            cursorCol++;
+        while (true) {
+            Line line = writableLine(row);
+            int avail = width - col;
+            carry.pushFrom(line, col, avail);
+
+            int fromInserted = Math.min(insertedLeft, avail);
+            boolean pad = false;
+            if (fromInserted == avail && insertedLeft > avail
+                    && Line.codePointOf(carry.peek(avail)) == Cell.CONTINUATION) {
+                // A wide character would be split by the right edge: leave an empty cell and wrap it.
+                fromInserted--;
+                pad = true;
+            }
+            if (pad) {
+                carry.popInto(line, col, avail - 1);
+                line.setCell(width - 1, Cell.EMPTY, TextAttributes.defaults());
+            } else {
+                carry.popInto(line, col, avail);
+            }
 
-            if (cursorCol >= width) {
-                cursorCol = 0;
-                cursorRow++;
+            if (insertedLeft > 0 && insertedLeft == fromInserted) {
+                endRow = row;
+                endCol = col + fromInserted;
+            }
+            insertedLeft -= fromInserted;
 
-                if (cursorRow >= height) {
-                    scrollUpOneLine();
-                    cursorRow = height - 1;
+            carry.trimTrailingEmpty(insertedLeft);
+            if (carry.isEmpty()) break;
+
+            if (row == height - 1 && row != regionBottom - 1) {
+                // Below the region at the bottom of the screen there is nothing to scroll: the rest is lost.
+                if (endRow < 0) {
+                    endRow = row;
+                    endCol = width - 1;
                 }
+                break;
             }
-
-            if (overflowCp == Cell.EMPTY) {
-                return;
+            line.setWrapped(true);
+            col = 0;
+            if (row == regionBottom - 1) {
+                scrollRegionUp(1);
+                // Rows above the region stay where they are.
+                if (endRow >= regionTop && endRow < regionBottom) endRow = Math.max(endRow - 1, regionTop);
+            } else {
+                row++;
             }
+        }
 
-            carryCp = overflowCp;
-            carryAttrs = overflowAttrs;
+        cursorRow = endRow;
+        cursorCol = endCol;
+        wrapPending = false;
+        if (cursorCol >= width) {
+            nextLine();
         }
     }
 
-    private void insertWide(int codePoint, TextAttributes attrs) {
-        // If only one cell remains on this line, move to next line start
-        if (cursorCol == width - 1) {
-            cursorCol = 0;
+    // Moves the cursor down one row, scrolling the region when it is on the region's bottom row. Below
+    // the region the cursor stops at the bottom of the screen. The column is kept.
+    public void lineFeed() {
+        wrapPending = false;
+        if (cursorRow == regionBottom - 1) {
+            scrollRegionUp(1);
+        } else if (cursorRow < height - 1) {
             cursorRow++;
-            if (cursorRow >= height) {
-                scrollUpOneLine();
-                cursorRow = height - 1;
-            }
         }
-        if (cursorCol >= width - 1) return;
+    }
 
-        insertOneCell(codePoint, attrs);
-        insertOneCell(Cell.CONTINUATION, attrs);
+    // Moves the cursor up one row, scrolling the region down when it is on the region's top row.
+    public void reverseLineFeed() {
+        wrapPending = false;
+        if (cursorRow == regionTop) {
+            scrollRegionDown(1);
+        } else if (cursorRow > 0) {
+            cursorRow--;
+        }
+    }
+
+    // 0: cursor to end of line, 1: start of line to cursor (inclusive), 2: whole line.
+    public void eraseInLine(int mode) {
+        wrapPending = false;
+        switch (mode) {
+            case 0 -> writableLine(cursorRow).clear(cursorCol, width);
+            case 1 -> writableLine(cursorRow).clear(0, cursorCol + 1);
+            case 2 -> clearLine(cursorRow);
+            default -> throw new IllegalArgumentException("unknown erase mode: " + mode);
+        }
+    }
+
+    // 0: cursor to end of screen, 1: start of screen to cursor (inclusive), 2: whole screen. The cursor
+    // does not move and scrollback is not touched.
+    public void eraseInDisplay(int mode) {
+        wrapPending = false;
+        switch (mode) {
+            case 0 -> {
+                eraseInLine(0);
+                for (int row = cursorRow + 1; row < height; row++) clearLine(row);
+            }
+            case 1 -> {
+                for (int row = 0; row < cursorRow; row++) clearLine(row);
+                eraseInLine(1);
+            }
+            case 2 -> {
+                for (int row = 0; row < height; row++) clearLine(row);
+            }
+            default -> throw new IllegalArgumentException("unknown erase mode: " + mode);
+        }
     }
 
     public void fillLine(int row, int codePointOrZero) {
         if (row < 0 || row >= height) throw new IllegalArgumentException("row out of bounds: " + row);
-        Line line = screenLine(row);
+        Line line = writableLine(row);
         for (int col = 0; col < width; col++) {
             line.setCell(col, codePointOrZero, currentAttrs);
         }
@@ -302,23 +859,56 @@ public final class TerminalBuffer {
     public int getCodePointAt(int globalRow, int col) {
         checkGlobalRow(globalRow);
         checkCol(col);
-        Line line = getLineByGlobalRow(globalRow);
+        LineView line = getLineByGlobalRow(globalRow);
         return line.codePointAt(col);
     }
 
     public TextAttributes getAttributesAt(int globalRow, int col) {
         checkGlobalRow(globalRow);
         checkCol(col);
-        Line line = getLineByGlobalRow(globalRow);
+        LineView line = getLineByGlobalRow(globalRow);
         return line.attrsAt(col);
     }
 
     public String getLineAsString(int globalRow) {
         checkGlobalRow(globalRow);
-        Line line = getLineByGlobalRow(globalRow);
+        LineView line = getLineByGlobalRow(globalRow);
         return line.toPlainString();
     }
 
+    // Bulk reads for renderers: one bounds check and one line lookup per row instead of per cell, nothing
+    // allocated. Attribute ids resolve via TextAttributes.byId; either destination array may be null.
+    public void copyRow(int globalRow, int[] codePoints, int[] attrIds) {
+        copyRect(globalRow, 0, 1, width, codePoints, attrIds);
+    }
+
+    // Copies rows x cols cells starting at (globalRow, col) row-major, cols entries per row.
+    public void copyRect(int globalRow, int col, int rows, int cols, int[] codePoints, int[] attrIds) {
+        checkRect(globalRow, col, rows, cols, codePoints, attrIds);
+        for (int r = 0; r < rows; r++) {
+            getLineByGlobalRow(globalRow + r).copyCells(col, cols, codePoints, attrIds, r * cols);
+        }
+    }
+
+    // Visits every cell of the global rows in [fromRow, toRow), row by row.
+    public void forEachCell(int fromRow, int toRow, CellVisitor visitor) {
+        Objects.requireNonNull(visitor);
+        checkRowRange(fromRow, toRow);
+        for (int row = fromRow; row < toRow; row++) {
+            getLineByGlobalRow(row).visitCells(row, 0, width, visitor);
+        }
+    }
+
+    private void checkRect(int globalRow, int col, int rows, int cols, int[] codePoints, int[] attrIds) {
+        if (rows < 0 || cols < 0) throw new IllegalArgumentException("rows and cols must be >= 0");
+        checkRowRange(globalRow, globalRow + rows);
+        if (col < 0 || col + cols > width) {
+            throw new IllegalArgumentException("col range out of bounds: [" + col + ", " + (col + cols) + ")");
+        }
+        if (codePoints != null) Objects.checkFromIndexSize(0, rows * cols, codePoints.length);
+        if (attrIds != null) Objects.checkFromIndexSize(0, rows * cols, attrIds.length);
+    }
+
     public String getScreenAsString() {
         StringBuilder sb = new StringBuilder();
         for (int i = 0; i < height; i++) {
@@ -330,7 +920,7 @@ public final class TerminalBuffer {
 
     public String getAllAsString() {
         StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < scrollbackSize; i++) {
+        for (int i = 0; i < scrollbackSize(); i++) {
             sb.append(getLineByGlobalRow(i).toPlainString()).append('\n');
         }
         for (int i = 0; i < height; i++) {
@@ -340,13 +930,140 @@ public final class TerminalBuffer {
         return sb.toString();
     }
 
-    private Line getLineByGlobalRow(int globalRow) {
-        if (globalRow < scrollbackSize) {
-            int idx = (scrollbackStart + globalRow) % scrollbackStore.length;
-            return scrollbackStore[idx];
+    // Streaming counterparts of getAllAsString() for histories too large to hold as one String. Rows are
+    // global rows in [fromRow, toRow), written as getLineAsString() would return them and separated by
+    // '\n', so exporting every row reproduces getAllAsString(). Like the other reads they must not run
+    // concurrently with writes.
+    public void exportTo(Appendable out) throws IOException {
+        exportTo(out, 0, totalLines());
+    }
+
+    public void exportTo(Appendable out, int fromRow, int toRow) throws IOException {
+        Objects.requireNonNull(out);
+        checkRowRange(fromRow, toRow);
+        for (int row = fromRow; row < toRow; row++) {
+            if (row != fromRow) out.append('\n');
+            LineView line = getLineByGlobalRow(row);
+            for (int col = 0; col < line.width(); col++) {
+                int cp = line.codePointAt(col);
+                if (cp <= 0) {
+                    out.append(' ');
+                } else if (Character.isBmpCodePoint(cp)) {
+                    out.append((char) cp);
+                } else {
+                    out.append(Character.highSurrogate(cp)).append(Character.lowSurrogate(cp));
+                }
+            }
+        }
+    }
+
+    public long exportTo(WritableByteChannel out) throws IOException {
+        return exportTo(out, 0, totalLines());
+    }
+
+    // Encodes straight from code points to UTF-8 through one fixed-size buffer; returns the bytes written.
+    public long exportTo(WritableByteChannel out, int fromRow, int toRow) throws IOException {
+        Objects.requireNonNull(out);
+        checkRowRange(fromRow, toRow);
+        ByteBuffer buf = ByteBuffer.allocate(EXPORT_BUFFER_BYTES);
+        long written = 0;
+        for (int row = fromRow; row < toRow; row++) {
+            if (row != fromRow) buf.put((byte) '\n');
+            LineView line = getLineByGlobalRow(row);
+            for (int col = 0; col < line.width(); col++) {
+                if (buf.remaining() < 4) {
+                    written += drain(buf, out);
+                }
+                int cp = line.codePointAt(col);
+                Utf8.encode(cp <= 0 ? ' ' : cp, buf);
+            }
+            if (buf.remaining() < 4) {
+                written += drain(buf, out);
+            }
+        }
+        return written + drain(buf, out);
+    }
+
+    private static int drain(ByteBuffer buf, WritableByteChannel out) throws IOException {
+        buf.flip();
+        int n = buf.remaining();
+        while (buf.hasRemaining()) {
+            out.write(buf);
+        }
+        buf.clear();
+        return n;
+    }
+
+    // Lines are produced lazily, one String per row, as the stream is consumed.
+    public Stream<CharSequence> lines(int fromRow, int toRow) {
+        checkRowRange(fromRow, toRow);
+        return IntStream.range(fromRow, toRow).mapToObj(row -> getLineByGlobalRow(row).toPlainString());
+    }
+
+    // Matches over all rows, scanning cells in place. The streams are sequential; call parallel() to split
+    // the rows across the fork-join pool. Reads may run in parallel with each other, not with writes.
+    public Stream<SearchMatch> search(String literal) {
+        return search(literal, 0, totalLines());
+    }
+
+    public Stream<SearchMatch> search(String literal, int fromRow, int toRow) {
+        int[] needle = literal.codePoints().toArray();
+        if (needle.length == 0) throw new IllegalArgumentException("search text must not be empty");
+        Supplier<LineSearcher> searchers = () -> new LineSearcher.Literal(needle);
+        if (searchIndex == null || needle.length < ScrollbackIndex.GRAM || fromRow >= scrollbackSize()
+                || reflow.reflowed()) {
+            return search(searchers, fromRow, toRow);
+        }
+        checkRowRange(fromRow, toRow);
+        int[] candidates = searchIndex.candidates(needle, firstHistorySeq(), historySeq);
+        int historyEnd = Math.min(toRow, scrollbackSize());
+        int first = lowerBound(candidates, fromRow);
+        int last = lowerBound(candidates, historyEnd);
+        int screenRows = Math.max(0, toRow - historyEnd);
+        int[] rows = Arrays.copyOfRange(candidates, first, last + screenRows);
+        for (int i = 0; i < screenRows; i++) {
+            rows[last - first + i] = historyEnd + i;
+        }
+        return StreamSupport.stream(new RowSearchSpliterator(this::getLineByGlobalRow, searchers, rows), false);
+    }
+
+    private static int lowerBound(int[] sorted, int key) {
+        int lo = 0;
+        int hi = sorted.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sorted[mid] < key) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    public Stream<SearchMatch> search(Pattern regex) {
+        return search(regex, 0, totalLines());
+    }
+
+    public Stream<SearchMatch> search(Pattern regex, int fromRow, int toRow) {
+        Objects.requireNonNull(regex);
+        return search(() -> new LineSearcher.Regex(regex), fromRow, toRow);
+    }
+
+    private Stream<SearchMatch> search(Supplier<LineSearcher> searchers, int fromRow, int toRow) {
+        checkRowRange(fromRow, toRow);
+        return StreamSupport.stream(new RowSearchSpliterator(this::getLineByGlobalRow, searchers, fromRow, toRow), false);
+    }
+
+    private void checkRowRange(int fromRow, int toRow) {
+        if (fromRow < 0 || toRow > totalLines() || fromRow > toRow) {
+            throw new IllegalArgumentException("row range out of bounds: [" + fromRow + ", " + toRow + ")");
         }
-        int screenRow = globalRow - scrollbackSize;
-        return screenLine(screenRow);
+    }
+
+    private LineView getLineByGlobalRow(int globalRow) {
+        int history = scrollbackSize();
+        if (globalRow >= history) {
+            return screenLine(globalRow - history);
+        }
+        return reflow.reflowed() ? reflow.line(globalRow, this::storedLine) : storedLine(globalRow);
     }
 
     private void checkGlobalRow(int globalRow) {
@@ -361,55 +1078,265 @@ public final class TerminalBuffer {
         }
     }
 
+    // A width change rewraps the screen at once: rows joined by soft wraps form logical lines, blank rows
+    // below the cursor are dropped, and rows that no longer fit move to scrollback. Scrollback is not
+    // touched; its rows are rewrapped when read (see ReflowIndex), so a resize costs O(screen cells).
     public void resize(int newWidth, int newHeight) {
         if (newWidth <= 0) throw new IllegalArgumentException("newWidth must be > 0");
         if (newHeight <= 0) throw new IllegalArgumentException("newHeight must be > 0");
 
         if (newWidth == this.width && newHeight == this.height) return;
 
-        if (newHeight < this.height) {
-            int removed = this.height - newHeight;
-            for (int i = 0; i < removed; i++) {
-                pushToScrollback(screenLine(i).deepCopy());
+        Line[] alternate = null;
+        int alternateCol = 0;
+        int alternateRow = 0;
+        if (alternateActive) {
+            // The main screen is reflowed as usual, with its saved cursor.
+            alternate = alternateRows(newWidth, newHeight);
+            alternateCol = cursorCol;
+            alternateRow = cursorRow;
+            screen = otherScreen;
+            screenTopIndex = otherTopIndex;
+            cursorCol = savedCursorCol;
+            cursorRow = savedCursorRow;
+        }
+        otherScreen = null;
+
+        Line[] newScreen = newWidth == this.width ? keepRows(newHeight) : reflowRows(newWidth, newHeight);
+
+        this.screen = newScreen;
+        this.screenTopIndex = 0;
+        this.width = newWidth;
+        this.height = newHeight;
+        this.fullRedraw = true;
+        this.modCount++;
+        this.wrapPending = false;
+        resetScrollRegion();
+
+        setCursor(cursorCol, cursorRow);
+        if (alternate != null) {
+            savedCursorCol = cursorCol;
+            savedCursorRow = cursorRow;
+            otherScreen = screen;
+            otherTopIndex = 0;
+            screen = alternate;
+            setCursor(alternateCol, alternateRow);
+        }
+    }
+
+    // The alternate screen is not reflowed and never feeds scrollback: rows are cut or padded at the
+    // bottom and right. Programs using it redraw after a resize anyway.
+    private Line[] alternateRows(int newWidth, int newHeight) {
+        Line[] newScreen = new Line[newHeight];
+        for (int i = 0; i < newHeight; i++) {
+            if (i < height) {
+                Line line = screenLine(i);
+                if (line.isShared()) line = line.unsharedCopy();
+                line.setWidth(newWidth);
+                newScreen[i] = line;
+            } else {
+                newScreen[i] = new Line(newWidth);
             }
         }
+        return newScreen;
+    }
 
+    private Line[] keepRows(int newHeight) {
+        int removed = Math.max(0, this.height - newHeight);
+        for (int i = 0; i < removed; i++) {
+            Line line = screenLine(i);
+            pushToScrollback(CompactLine.of(line), line.isWrapped());
+        }
         Line[] newScreen = new Line[newHeight];
-        int oldLogicalOffset = (newHeight < this.height) ? (this.height - newHeight) : 0;
-        int linesToCopy = Math.min(newHeight, this.height - oldLogicalOffset);
+        int linesToCopy = Math.min(newHeight, this.height - removed);
         for (int i = 0; i < linesToCopy; i++) {
-            newScreen[i] = screenLine(oldLogicalOffset + i).resizedTo(newWidth);
+            newScreen[i] = screenLine(removed + i);
         }
         for (int i = linesToCopy; i < newHeight; i++) {
-            newScreen[i] = new Line(newWidth);
+            newScreen[i] = new Line(width);
         }
+        return newScreen;
+    }
 
-        this.screen = newScreen;
-        this.screenTopIndex = 0;
-        this.width = newWidth;
-        this.height = newHeight;
+    private Line[] reflowRows(int newWidth, int newHeight) {
+        int lastRow = cursorRow;
+        for (int row = height - 1; row > lastRow; row--) {
+            Line line = screenLine(row);
+            if (line.contentLength() > 0 || line.isWrapped()) {
+                lastRow = row;
+                break;
+            }
+        }
 
-        setCursor(cursorCol, cursorRow);
+        // Rows that fit keep their Line; lines that were read and are not held by a snapshot are reused
+        // for the rows that have to be rebuilt.
+        List<Line> rows = new ArrayList<>(lastRow + 1);
+        ArrayDeque<Line> spare = new ArrayDeque<>();
+        int newCursorRow = 0;
+        int newCursorCol = 0;
+        Line out = null;
+        int col = 0;
+        for (int row = 0; row <= lastRow; row++) {
+            Line line = screenLine(row);
+            int length = line.contentLength();
+            if (out == null && !line.isWrapped() && length <= newWidth) {
+                if (row == cursorRow) {
+                    newCursorRow = rows.size();
+                    newCursorCol = Math.min(cursorCol, newWidth - 1);
+                }
+                rows.add(withWidth(line, newWidth));
+                continue;
+            }
+            if (out == null) out = takeLine(spare, newWidth);
+            for (int c = 0; c < length; c++) {
+                long cell = line.packedAt(c);
+                int cp = Line.codePointOf(cell);
+                if (cp == Cell.CONTINUATION) {
+                    // Written together with the cell before it.
+                    if (row == cursorRow && c == cursorCol) {
+                        newCursorRow = rows.size();
+                        newCursorCol = Math.max(col - 1, 0);
+                    }
+                    continue;
+                }
+                int cells = c + 1 < line.width() && line.codePointAt(c + 1) == Cell.CONTINUATION ? 2 : 1;
+                if (cells > newWidth) continue;
+                if (col + cells > newWidth) {
+                    out.setWrapped(true);
+                    rows.add(out);
+                    out = takeLine(spare, newWidth);
+                    col = 0;
+                }
+                if (row == cursorRow && c == cursorCol) {
+                    newCursorRow = rows.size();
+                    newCursorCol = col;
+                }
+                out.setCell(col, cp, Line.attrIdOf(cell));
+                if (cells == 2) {
+                    out.setCell(col + 1, Cell.CONTINUATION, Line.attrIdOf(cell));
+                }
+                col += cells;
+            }
+            if (row == cursorRow && cursorCol >= length) {
+                // Past the text the cursor keeps its distance from it, up to the right edge.
+                newCursorRow = rows.size();
+                newCursorCol = Math.min(col + cursorCol - length, newWidth - 1);
+            }
+            if (!line.isWrapped() || row == lastRow) {
+                out.setWrapped(line.isWrapped());
+                rows.add(out);
+                out = null;
+                col = 0;
+            }
+            if (!line.isShared()) spare.add(line);
+        }
+        for (int row = lastRow + 1; row < height; row++) {
+            Line line = screenLine(row);
+            if (!line.isShared()) spare.add(line);
+        }
+
+        reflow.setWidth(newWidth);
+        int removed = Math.max(0, rows.size() - newHeight);
+        for (int i = 0; i < removed; i++) {
+            Line line = rows.get(i);
+            pushToScrollback(CompactLine.of(line), line.isWrapped());
+            if (!line.isShared()) spare.add(line);
+        }
+        Line[] newScreen = new Line[newHeight];
+        for (int i = 0; i < newHeight; i++) {
+            newScreen[i] = removed + i < rows.size() ? rows.get(removed + i) : takeLine(spare, newWidth);
+        }
+        cursorRow = newCursorRow - removed;
+        cursorCol = newCursorCol;
+        return newScreen;
+    }
+
+    private static Line withWidth(Line line, int width) {
+        if (line.isShared()) {
+            line = line.unsharedCopy();
+        }
+        line.setWidth(width);
+        return line;
+    }
+
+    private static Line takeLine(ArrayDeque<Line> spare, int width) {
+        Line line = spare.poll();
+        if (line == null) return new Line(width);
+        line.setWidth(width);
+        line.clear();
+        return line;
+    }
+
+    // Rewrites the history as stored rows of the current width, so that reads stop assembling rows and
+    // literal searches can use the search index again. Rows are laid out in parallel on the pool and the
+    // scrollback is swapped in one step. Global rows keep their cells; only a row stored narrower than the
+    // display, which read at its own width before, now reads padded to the display width. Without a disk
+    // tier, rows beyond the scrollback limit are dropped. Snapshots keep the old rows, on disk as well.
+    public void reflowScrollback() {
+        reflowScrollback(ForkJoinPool.commonPool());
+    }
+
+    public void reflowScrollback(ForkJoinPool pool) {
+        Objects.requireNonNull(pool);
+        if (!reflow.reflowed()) return;
+        ReflowIndex.Rows rows = reflow.materialize(this::storedLine, pool);
+        CompactLine[] lines = rows.lines();
+        scrollback.clear();
+        if (spill != null) {
+            spill.clear();
+        }
+        reflow.clear();
+        int first = spill != null ? 0 : Math.max(0, lines.length - scrollbackMax);
+        for (int i = first; i < lines.length; i++) {
+            pushToScrollback(lines[i], rows.wrapped()[i]);
+        }
+    }
+
+    // Captures the current state in O(height): screen lines are shared copy-on-write and scrollback is
+    // referenced, not copied. Call it from the writing thread (or under the lock writes use); the snapshot
+    // itself can then be read from any thread.
+    public TerminalSnapshot snapshot() {
+        TerminalSnapshot last = lastSnapshot;
+        if (last != null && last.version() == modCount && last.width() == width && last.height() == height
+                && last.cursorCol() == cursorCol && last.cursorRow() == cursorRow
+                && last.currentAttributes() == currentAttrs) {
+            return last;
+        }
+        Line[] lines = new Line[height];
+        for (int row = 0; row < height; row++) {
+            lines[row] = screenLine(row);
+            lines[row].share();
+        }
+        lastSnapshot = new TerminalSnapshot(modCount, width, height, cursorCol, cursorRow, currentAttrs, lines,
+                scrollback.view(), spill == null ? null : spill.view(), reflow.reflowed() ? reflow.view() : null);
+        return lastSnapshot;
     }
 
     public void insertEmptyLineAtBottom() {
-        scrollUpOneLine();
+        scrollUp(1);
     }
 
     public void clearScreen() {
         screenTopIndex = 0;
+        fullRedraw = true;
         for (int i = 0; i < height; i++) {
-            screen[i].clear();
+            clearLine(i);
         }
         setCursor(0, 0);
     }
 
     public void clearAll() {
+        exitAlternateScreen();
         clearScreen();
-        scrollbackStart = 0;
-        scrollbackSize = 0;
-        for (int i = 0; i < scrollbackStore.length; i++) {
-            scrollbackStore[i] = null;
+        resetScrollRegion();
+        modCount++;
+        scrollback.clear();
+        if (spill != null) {
+            spill.clear();
+        }
+        reflow.clear();
+        if (searchIndex != null) {
+            searchIndex.retainFrom(historySeq);
         }
     }
 }
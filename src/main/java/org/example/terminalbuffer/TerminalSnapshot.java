@@ -0,0 +1,171 @@
+package org.example.terminalbuffer;
+
+import java.util.Objects;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// Immutable view of a TerminalBuffer at one point in time, safe to read from any thread while the buffer
+// keeps changing. Global rows are numbered as in the buffer at the time of the snapshot.
+//
+// Taking a snapshot shares the screen lines (the buffer copies a line before it next changes it) and
+// references the scrollback without copying it. Lines that spilled to disk keep their segment files
+// alive across clearAll() and reflowScrollback(); after the buffer's close() reading them throws.
+public final class TerminalSnapshot {
+    private final long version;
+    private final int width;
+    private final int height;
+    private final int cursorCol;
+    private final int cursorRow;
+    private final TextAttributes currentAttributes;
+
+    private final Line[] screen;
+    private final Scrollback.View scrollback;
+    private final DiskScrollback.View spill;
+    // Null unless history is shown rewrapped at this width.
+    private final ReflowIndex reflow;
+
+    TerminalSnapshot(long version, int width, int height, int cursorCol, int cursorRow,
+                     TextAttributes currentAttributes, Line[] screen, Scrollback.View scrollback,
+                     DiskScrollback.View spill, ReflowIndex reflow) {
+        this.version = version;
+        this.width = width;
+        this.height = height;
+        this.cursorCol = cursorCol;
+        this.cursorRow = cursorRow;
+        this.currentAttributes = currentAttributes;
+        this.screen = screen;
+        this.scrollback = scrollback;
+        this.spill = spill;
+        this.reflow = reflow;
+    }
+
+    // Increases with every change to the buffer's content; equal versions mean equal content.
+    public long version() {
+        return version;
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    public int cursorCol() {
+        return cursorCol;
+    }
+
+    public int cursorRow() {
+        return cursorRow;
+    }
+
+    public TextAttributes currentAttributes() {
+        return currentAttributes;
+    }
+
+    public int scrollbackSize() {
+        return reflow != null ? reflow.rows() : spilledLines() + scrollback.size();
+    }
+
+    public int totalLines() {
+        return scrollbackSize() + height;
+    }
+
+    public int getCodePointAt(int globalRow, int col) {
+        return line(globalRow).codePointAt(checkCol(col));
+    }
+
+    public TextAttributes getAttributesAt(int globalRow, int col) {
+        return line(globalRow).attrsAt(checkCol(col));
+    }
+
+    public String getLineAsString(int globalRow) {
+        return line(globalRow).toPlainString();
+    }
+
+    public void copyRow(int globalRow, int[] codePoints, int[] attrIds) {
+        copyRect(globalRow, 0, 1, width, codePoints, attrIds);
+    }
+
+    public void copyRect(int globalRow, int col, int rows, int cols, int[] codePoints, int[] attrIds) {
+        if (rows < 0 || cols < 0) throw new IllegalArgumentException("rows and cols must be >= 0");
+        checkRowRange(globalRow, globalRow + rows);
+        if (col < 0 || col + cols > width) {
+            throw new IllegalArgumentException("col range out of bounds: [" + col + ", " + (col + cols) + ")");
+        }
+        if (codePoints != null) Objects.checkFromIndexSize(0, rows * cols, codePoints.length);
+        if (attrIds != null) Objects.checkFromIndexSize(0, rows * cols, attrIds.length);
+        for (int r = 0; r < rows; r++) {
+            lineAt(globalRow + r).copyCells(col, cols, codePoints, attrIds, r * cols);
+        }
+    }
+
+    public void forEachCell(int fromRow, int toRow, CellVisitor visitor) {
+        Objects.requireNonNull(visitor);
+        checkRowRange(fromRow, toRow);
+        for (int row = fromRow; row < toRow; row++) {
+            lineAt(row).visitCells(row, 0, width, visitor);
+        }
+    }
+
+    public String getScreenAsString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < height; i++) {
+            sb.append(screen[i].toPlainString());
+            if (i != height - 1) sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    public Stream<SearchMatch> search(String literal) {
+        int[] needle = literal.codePoints().toArray();
+        if (needle.length == 0) throw new IllegalArgumentException("search text must not be empty");
+        return StreamSupport.stream(new RowSearchSpliterator(this::lineAt, () -> new LineSearcher.Literal(needle),
+                0, totalLines()), false);
+    }
+
+    public Stream<SearchMatch> search(Pattern regex) {
+        Objects.requireNonNull(regex);
+        return StreamSupport.stream(new RowSearchSpliterator(this::lineAt, () -> new LineSearcher.Regex(regex),
+                0, totalLines()), false);
+    }
+
+    private int spilledLines() {
+        return spill == null ? 0 : spill.size();
+    }
+
+    private LineView line(int globalRow) {
+        if (globalRow < 0 || globalRow >= totalLines()) {
+            throw new IllegalArgumentException("globalRow out of bounds: " + globalRow);
+        }
+        return lineAt(globalRow);
+    }
+
+    private LineView lineAt(int globalRow) {
+        int history = scrollbackSize();
+        if (globalRow >= history) {
+            return screen[globalRow - history];
+        }
+        return reflow != null ? reflow.line(globalRow, this::storedLine) : storedLine(globalRow);
+    }
+
+    private LineView storedLine(int index) {
+        int spilled = spilledLines();
+        return index < spilled ? spill.get(index) : scrollback.get(index - spilled);
+    }
+
+    private void checkRowRange(int fromRow, int toRow) {
+        if (fromRow < 0 || toRow > totalLines() || fromRow > toRow) {
+            throw new IllegalArgumentException("row range out of bounds: [" + fromRow + ", " + toRow + ")");
+        }
+    }
+
+    private int checkCol(int col) {
+        if (col < 0 || col >= width) {
+            throw new IllegalArgumentException("col out of bounds: " + col);
+        }
+        return col;
+    }
+}
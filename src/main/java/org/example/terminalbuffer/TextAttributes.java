@@ -1,8 +1,7 @@
 package org.example.terminalbuffer;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 public final class TextAttributes {
     public static final byte DEFAULT_COLOR = -1;
@@ -11,44 +10,79 @@ public final class TextAttributes {
     public static final int ITALIC = 2;
     public static final int UNDERLINE = 4;
 
-    private static final Map<Long, TextAttributes> INTERN = new HashMap<>();
+    private static final int STYLE_BITS = 3;
+    private static final int ALL_STYLES = BOLD | ITALIC | UNDERLINE;
+    private static final int COLORS = 17; // default + 16 terminal colors
+
+    // The key space is small (17 fg x 17 bg x 8 styles), so the intern table is a preallocated array
+    // indexed directly by the key and the index doubles as the attribute id. Lookups never allocate
+    // and racing interns settle on a single instance via CAS, so no lock is needed.
+    static final int ID_COUNT = COLORS * COLORS << STYLE_BITS;
+
+    private static final AtomicReferenceArray<TextAttributes> BY_ID = new AtomicReferenceArray<>(ID_COUNT);
+
+    private static final TextAttributes DEFAULTS = intern(DEFAULT_COLOR, DEFAULT_COLOR, 0);
 
     private final byte fg;
     private final byte bg;
     private final int styleMask;
+    private final int id;
 
     public TextAttributes(byte fg, byte bg, int styleMask) {
         validateColor(fg);
         validateColor(bg);
+        validateStyleMask(styleMask);
         this.fg = fg;
         this.bg = bg;
         this.styleMask = styleMask;
+        this.id = idOf(fg, bg, styleMask);
     }
 
-    private static long pack(byte fg, byte bg, int styleMask) {
-        return (fg & 0xFFL) | ((bg & 0xFFL) << 8) | ((long) styleMask << 16);
+    private static int idOf(byte fg, byte bg, int styleMask) {
+        return ((fg + 1) * COLORS + (bg + 1)) << STYLE_BITS | styleMask;
     }
 
     public static TextAttributes intern(byte fg, byte bg, int styleMask) {
         validateColor(fg);
         validateColor(bg);
-        long key = pack(fg, bg, styleMask);
-        TextAttributes existing = INTERN.get(key);
+        validateStyleMask(styleMask);
+        TextAttributes existing = BY_ID.get(idOf(fg, bg, styleMask));
         if (existing != null) {
             return existing;
         }
-        TextAttributes nu = new TextAttributes(fg, bg, styleMask);
-        INTERN.put(key, nu);
-        return nu;
+        return publish(new TextAttributes(fg, bg, styleMask));
     }
 
     public static TextAttributes intern(TextAttributes a) {
         Objects.requireNonNull(a);
-        return intern(a.fg, a.bg, a.styleMask);
+        TextAttributes existing = BY_ID.get(a.id);
+        if (existing != null) {
+            return existing;
+        }
+        return publish(a);
+    }
+
+    private static TextAttributes publish(TextAttributes candidate) {
+        TextAttributes winner = BY_ID.compareAndExchange(candidate.id, null, candidate);
+        return winner != null ? winner : candidate;
     }
 
     public static TextAttributes defaults() {
-        return intern(DEFAULT_COLOR, DEFAULT_COLOR, 0);
+        return DEFAULTS;
+    }
+
+    public static TextAttributes byId(int id) {
+        TextAttributes existing = BY_ID.get(id);
+        if (existing != null) {
+            return existing;
+        }
+        int styleMask = id & ALL_STYLES;
+        int colors = id >>> STYLE_BITS;
+        return intern((byte) (colors / COLORS - 1), (byte) (colors % COLORS - 1), styleMask);
+    }
+
+    public int id() {
+        return id;
     }
 
     public byte fg() {
@@ -82,14 +116,20 @@ public final class TextAttributes {
         }
     }
 
+    public static void validateStyleMask(int styleMask) {
+        if ((styleMask & ~ALL_STYLES) != 0) {
+            throw new IllegalArgumentException("Style mask must combine BOLD, ITALIC and UNDERLINE only, got: " + styleMask);
+        }
+    }
+
     @Override
     public boolean equals(Object o) {
         if (!(o instanceof TextAttributes other)) return false;
-        return fg == other.fg && bg == other.bg && styleMask == other.styleMask;
+        return id == other.id;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(fg, bg, styleMask);
+        return id;
     }
 }
@@ -0,0 +1,86 @@
+package org.example.terminalbuffer;
+
+import java.nio.ByteBuffer;
+
+final class Utf8 {
+    static final int REPLACEMENT = 0xFFFD;
+
+    // decode() packs the sequence length into the bits above the code point.
+    static final int INCOMPLETE = -1;
+    private static final int LENGTH_SHIFT = 24;
+    private static final int CODE_POINT_MASK = (1 << LENGTH_SHIFT) - 1;
+
+    private Utf8() {
+    }
+
+    static int codePoint(int decoded) {
+        return decoded & CODE_POINT_MASK;
+    }
+
+    static int length(int decoded) {
+        return decoded >>> LENGTH_SHIFT;
+    }
+
+    // Decodes the sequence starting at i (absolute index, i < end). Malformed input yields U+FFFD and
+    // consumes the maximal invalid prefix; a valid but truncated sequence yields INCOMPLETE.
+    static int decode(ByteBuffer bytes, int i, int end) {
+        int b0 = bytes.get(i) & 0xFF;
+        if (b0 < 0x80) return (1 << LENGTH_SHIFT) | b0;
+
+        int len;
+        int cp;
+        if (b0 >= 0xC2 && b0 <= 0xDF) {
+            len = 2;
+            cp = b0 & 0x1F;
+        } else if (b0 >= 0xE0 && b0 <= 0xEF) {
+            len = 3;
+            cp = b0 & 0x0F;
+        } else if (b0 >= 0xF0 && b0 <= 0xF4) {
+            len = 4;
+            cp = b0 & 0x07;
+        } else {
+            return (1 << LENGTH_SHIFT) | REPLACEMENT;
+        }
+
+        for (int k = 1; k < len; k++) {
+            if (i + k >= end) return INCOMPLETE;
+            int b = bytes.get(i + k) & 0xFF;
+            if (!isValidContinuation(b0, k, b)) {
+                return (k << LENGTH_SHIFT) | REPLACEMENT;
+            }
+            cp = (cp << 6) | (b & 0x3F);
+        }
+        return (len << LENGTH_SHIFT) | cp;
+    }
+
+    // Appends the UTF-8 form of cp; out needs 4 bytes remaining. Surrogates are written as U+FFFD.
+    static void encode(int cp, ByteBuffer out) {
+        if (cp >= Character.MIN_SURROGATE && cp <= Character.MAX_SURROGATE) {
+            cp = REPLACEMENT;
+        }
+        if (cp < 0x80) {
+            out.put((byte) cp);
+        } else if (cp < 0x800) {
+            out.put((byte) (0xC0 | cp >> 6)).put((byte) (0x80 | cp & 0x3F));
+        } else if (cp < 0x10000) {
+            out.put((byte) (0xE0 | cp >> 12)).put((byte) (0x80 | cp >> 6 & 0x3F)).put((byte) (0x80 | cp & 0x3F));
+        } else {
+            out.put((byte) (0xF0 | cp >> 18)).put((byte) (0x80 | cp >> 12 & 0x3F))
+                    .put((byte) (0x80 | cp >> 6 & 0x3F)).put((byte) (0x80 | cp & 0x3F));
+        }
+    }
+
+    static boolean isValidContinuation(int leadByte, int index, int b) {
+        if (index == 1) {
+            // Second byte ranges exclude overlong forms, surrogates and code points above U+10FFFF.
+            switch (leadByte) {
+                case 0xE0: return b >= 0xA0 && b <= 0xBF;
+                case 0xED: return b >= 0x80 && b <= 0x9F;
+                case 0xF0: return b >= 0x90 && b <= 0xBF;
+                case 0xF4: return b >= 0x80 && b <= 0x8F;
+                default: break;
+            }
+        }
+        return (b & 0xC0) == 0x80;
+    }
+}
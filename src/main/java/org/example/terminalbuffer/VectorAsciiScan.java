@@ -0,0 +1,36 @@
+package org.example.terminalbuffer;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// Only loaded through AsciiScan after it has checked that the incubator module is present.
+final class VectorAsciiScan {
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    private VectorAsciiScan() {
+    }
+
+    static int printableRunEnd(byte[] bytes, int from, int to) {
+        int i = from;
+        for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length()) {
+            ByteVector v = ByteVector.fromArray(SPECIES, bytes, i);
+            // Bytes are signed, so non-ASCII bytes are negative and fall under the < 0x20 test.
+            VectorMask<Byte> stop = v.compare(VectorOperators.LT, (byte) 0x20).or(v.compare(VectorOperators.EQ, (byte) 0x7F));
+            if (stop.anyTrue()) return i + stop.firstTrue();
+        }
+        while (i < to && AsciiScan.isPrintableAscii(bytes[i])) i++;
+        return i;
+    }
+
+    static int asciiRunEnd(byte[] bytes, int from, int to) {
+        int i = from;
+        for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length()) {
+            VectorMask<Byte> stop = ByteVector.fromArray(SPECIES, bytes, i).compare(VectorOperators.LT, (byte) 0);
+            if (stop.anyTrue()) return i + stop.firstTrue();
+        }
+        while (i < to && bytes[i] >= 0) i++;
+        return i;
+    }
+}
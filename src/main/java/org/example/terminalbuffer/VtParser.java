@@ -0,0 +1,342 @@
+package org.example.terminalbuffer;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+
+// Byte-stream front end for a TerminalBuffer: consumes raw PTY output in arbitrary chunks and applies it
+// directly, without decoding to Strings first.
+//
+// Runs of printable bytes go to the buffer's UTF-8 writer in place. The parser turns on the buffer's
+// autowrap, as a terminal starts with DECAWM set, so text reaching the right margin continues on a
+// soft-wrapped next row. A sequence split across chunks is kept
+// in a four-byte carry and completed by the next chunk. Recognized controls:
+// - C0: BS, HT (8-column stops), LF/VT/FF, CR; CAN/SUB abort a sequence; other C0 bytes are ignored
+// - ESC 7/8 (save/restore cursor and attributes), ESC D/E/M, ESC c
+// - CSI A-G, H/f, a, d, e, `, J, K, L, M, S, T, r, m (16 colors; 38/48;5;n for n < 16)
+// - CSI ? 7 h/l (autowrap), CSI ? 1049 h/l (alternate screen)
+// OSC/DCS/SOS/PM/APC strings and unsupported or private sequences are consumed and ignored.
+public final class VtParser {
+    private static final int GROUND = 0;
+    private static final int ESCAPE = 1;
+    private static final int ESCAPE_INTERMEDIATE = 2;
+    private static final int CSI = 3;
+    private static final int STRING = 4;
+    private static final int STRING_ESCAPE = 5;
+
+    private static final int MAX_PARAMS = 16;
+    private static final int MAX_PARAM_VALUE = 65535;
+    private static final int TAB_WIDTH = 8;
+
+    private final TerminalBuffer buffer;
+
+    private int state = GROUND;
+
+    private final int[] params = new int[MAX_PARAMS];
+    private int paramIndex;
+    // The first parameter byte when it is one of < = > ?, otherwise 0.
+    private int privateMarker;
+    private boolean intermediate;
+
+    private final ByteBuffer pending = ByteBuffer.allocate(4);
+    private int pendingLen;
+
+    // Last array passed to feed(byte[], ...), wrapped once so repeated feeds from the same array don't allocate.
+    private ByteBuffer wrapped;
+
+    private int savedCol;
+    private int savedRow;
+    private TextAttributes savedAttrs = TextAttributes.defaults();
+
+    public VtParser(TerminalBuffer buffer) {
+        this.buffer = Objects.requireNonNull(buffer);
+        buffer.setAutoWrap(true);
+    }
+
+    public void feed(byte[] bytes, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, bytes.length);
+        if (wrapped == null || wrapped.array() != bytes) {
+            wrapped = ByteBuffer.wrap(bytes);
+        }
+        feed(wrapped, offset, offset + length);
+    }
+
+    // Consumes everything from the buffer's position to its limit.
+    public void feed(ByteBuffer bytes) {
+        feed(bytes, bytes.position(), bytes.limit());
+        bytes.position(bytes.limit());
+    }
+
+    private void feed(ByteBuffer in, int from, int end) {
+        int i = from;
+        while (i < end) {
+            if (pendingLen > 0) {
+                i = completePending(in, i);
+                continue;
+            }
+            int b = in.get(i) & 0xFF;
+            switch (state) {
+                case GROUND -> {
+                    if (b >= 0x20 && b != 0x7F) {
+                        i = print(in, i, end);
+                        continue;
+                    }
+                    execute(b);
+                }
+                case ESCAPE -> escape(b);
+                case ESCAPE_INTERMEDIATE -> {
+                    if (b < 0x20) {
+                        execute(b);
+                    } else if (b >= 0x30 && b != 0x7F) {
+                        state = GROUND;
+                    }
+                }
+                case CSI -> csi(b);
+                case STRING -> {
+                    if (b == 0x1B) {
+                        state = STRING_ESCAPE;
+                    } else if (b == 0x07 || b == 0x18 || b == 0x1A) {
+                        state = GROUND;
+                    }
+                }
+                case STRING_ESCAPE -> state = b == '\\' ? GROUND : STRING;
+                default -> throw new IllegalStateException("state " + state);
+            }
+            i++;
+        }
+    }
+
+    private int print(ByteBuffer in, int from, int end) {
+        // Printable ASCII is found a vector at a time; UTF-8 bytes in between are stepped over one by one.
+        int runEnd = from + 1;
+        while (runEnd < end) {
+            runEnd = AsciiScan.printableRunEnd(in, runEnd, end);
+            if (runEnd == end || in.get(runEnd) >= 0) break;
+            runEnd++;
+        }
+        int i = from;
+        while (i < runEnd) {
+            i = buffer.writeUtf8(in, i, runEnd);
+            if (i == runEnd) break;
+            if (Utf8.decode(in, i, runEnd) != Utf8.INCOMPLETE) continue; // a character that did not fit
+            if (runEnd == end) {
+                // Split by the end of the chunk: finish it with the next one.
+                for (; i < runEnd; i++) {
+                    pending.put(pendingLen++, in.get(i));
+                }
+            } else {
+                // Interrupted by a control byte.
+                buffer.writeCodePoint(Utf8.REPLACEMENT);
+            }
+            break;
+        }
+        return runEnd;
+    }
+
+    // Adds the next byte to the carried partial sequence; returns the index of the next unread byte.
+    private int completePending(ByteBuffer in, int i) {
+        byte b = in.get(i);
+        if ((b & 0xC0) != 0x80) {
+            // Not a continuation byte: the carried sequence is truncated; the byte is processed normally.
+            buffer.writeCodePoint(Utf8.REPLACEMENT);
+            pendingLen = 0;
+            return i;
+        }
+        pending.put(pendingLen++, b);
+        if (Utf8.decode(pending, 0, pendingLen) != Utf8.INCOMPLETE) {
+            buffer.writeUtf8(pending, 0, pendingLen);
+            pendingLen = 0;
+        }
+        return i + 1;
+    }
+
+    private void execute(int b) {
+        switch (b) {
+            case 0x08 -> buffer.moveCursorLeft(1);
+            case 0x09 -> buffer.moveCursorRight(TAB_WIDTH - buffer.cursorCol() % TAB_WIDTH);
+            case 0x0A, 0x0B, 0x0C -> buffer.lineFeed();
+            case 0x0D -> buffer.setCursor(0, buffer.cursorRow());
+            case 0x18, 0x1A -> state = GROUND;
+            case 0x1B -> state = ESCAPE;
+            default -> {
+            }
+        }
+    }
+
+    private void escape(int b) {
+        if (b < 0x20) {
+            execute(b);
+            return;
+        }
+        state = GROUND;
+        switch (b) {
+            case '[' -> {
+                state = CSI;
+                Arrays.fill(params, 0);
+                paramIndex = 0;
+                privateMarker = 0;
+                intermediate = false;
+            }
+            case ']', 'P', 'X', '^', '_' -> state = STRING;
+            case '7' -> {
+                savedCol = buffer.cursorCol();
+                savedRow = buffer.cursorRow();
+                savedAttrs = buffer.currentAttributes();
+            }
+            case '8' -> {
+                buffer.setCursor(savedCol, savedRow);
+                buffer.setCurrentAttributes(savedAttrs);
+            }
+            case 'D' -> buffer.lineFeed();
+            case 'E' -> {
+                buffer.setCursor(0, buffer.cursorRow());
+                buffer.lineFeed();
+            }
+            case 'M' -> buffer.reverseLineFeed();
+            case 'c' -> {
+                buffer.clearAll();
+                buffer.resetAttributes();
+                buffer.setAutoWrap(true);
+                savedCol = 0;
+                savedRow = 0;
+                savedAttrs = TextAttributes.defaults();
+            }
+            default -> {
+                if (b <= 0x2F) state = ESCAPE_INTERMEDIATE;
+            }
+        }
+    }
+
+    private void csi(int b) {
+        if (b >= '0' && b <= '9') {
+            params[paramIndex] = Math.min(params[paramIndex] * 10 + (b - '0'), MAX_PARAM_VALUE);
+        } else if (b == ';' || b == ':') {
+            if (paramIndex < MAX_PARAMS - 1) paramIndex++;
+        } else if (b >= '<' && b <= '?') {
+            if (privateMarker == 0) privateMarker = b;
+        } else if (b >= 0x20 && b <= 0x2F) {
+            intermediate = true;
+        } else if (b >= 0x40 && b <= 0x7E) {
+            state = GROUND;
+            if (intermediate) return;
+            if (privateMarker == 0) {
+                dispatchCsi(b);
+            } else if (privateMarker == '?' && (b == 'h' || b == 'l')) {
+                setPrivateModes(b == 'h');
+            }
+        } else if (b < 0x20) {
+            execute(b);
+        }
+    }
+
+    private void dispatchCsi(int command) {
+        int n = params[0] == 0 ? 1 : params[0];
+        switch (command) {
+            case 'A' -> buffer.moveCursorUp(n);
+            case 'B', 'e' -> buffer.moveCursorDown(n);
+            case 'C', 'a' -> buffer.moveCursorRight(n);
+            case 'D' -> buffer.moveCursorLeft(n);
+            case 'E' -> buffer.setCursor(0, buffer.cursorRow() + n);
+            case 'F' -> buffer.setCursor(0, buffer.cursorRow() - n);
+            case 'G', '`' -> buffer.setCursor(n - 1, buffer.cursorRow());
+            case 'd' -> buffer.setCursor(buffer.cursorCol(), n - 1);
+            case 'H', 'f' -> buffer.setCursor((params[1] == 0 ? 1 : params[1]) - 1, n - 1);
+            case 'J' -> {
+                if (params[0] <= 2) buffer.eraseInDisplay(params[0]);
+            }
+            case 'K' -> {
+                if (params[0] <= 2) buffer.eraseInLine(params[0]);
+            }
+            case 'L' -> {
+                buffer.insertLines(n);
+                buffer.setCursor(0, buffer.cursorRow());
+            }
+            case 'M' -> {
+                buffer.deleteLines(n);
+                buffer.setCursor(0, buffer.cursorRow());
+            }
+            case 'S' -> buffer.scrollRegionUp(n);
+            case 'T' -> buffer.scrollRegionDown(n);
+            case 'r' -> setTopBottomMargins();
+            case 'm' -> selectGraphicRendition();
+            default -> {
+            }
+        }
+    }
+
+    private void setPrivateModes(boolean set) {
+        for (int k = 0; k <= paramIndex; k++) {
+            if (params[k] == 7) {
+                buffer.setAutoWrap(set);
+            } else if (params[k] == 1049) {
+                if (set) {
+                    buffer.enterAlternateScreen();
+                } else {
+                    buffer.exitAlternateScreen();
+                }
+            }
+        }
+    }
+
+    // DECSTBM: an invalid region is ignored; a valid one also homes the cursor.
+    private void setTopBottomMargins() {
+        int top = params[0] == 0 ? 1 : params[0];
+        int bottom = params[1] == 0 ? buffer.height() : params[1];
+        if (top >= bottom || bottom > buffer.height()) return;
+        buffer.setScrollRegion(top - 1, bottom);
+        buffer.setCursor(0, 0);
+    }
+
+    private void selectGraphicRendition() {
+        TextAttributes current = buffer.currentAttributes();
+        byte fg = current.fg();
+        byte bg = current.bg();
+        int style = current.styleMask();
+        int count = paramIndex + 1;
+        for (int k = 0; k < count; k++) {
+            int p = params[k];
+            if (p == 0) {
+                fg = TextAttributes.DEFAULT_COLOR;
+                bg = TextAttributes.DEFAULT_COLOR;
+                style = 0;
+            } else if (p == 1) {
+                style |= TextAttributes.BOLD;
+            } else if (p == 3) {
+                style |= TextAttributes.ITALIC;
+            } else if (p == 4) {
+                style |= TextAttributes.UNDERLINE;
+            } else if (p == 22) {
+                style &= ~TextAttributes.BOLD;
+            } else if (p == 23) {
+                style &= ~TextAttributes.ITALIC;
+            } else if (p == 24) {
+                style &= ~TextAttributes.UNDERLINE;
+            } else if (p >= 30 && p <= 37) {
+                fg = (byte) (p - 30);
+            } else if (p == 39) {
+                fg = TextAttributes.DEFAULT_COLOR;
+            } else if (p >= 40 && p <= 47) {
+                bg = (byte) (p - 40);
+            } else if (p == 49) {
+                bg = TextAttributes.DEFAULT_COLOR;
+            } else if (p >= 90 && p <= 97) {
+                fg = (byte) (p - 90 + 8);
+            } else if (p >= 100 && p <= 107) {
+                bg = (byte) (p - 100 + 8);
+            } else if (p == 38 || p == 48) {
+                // Extended colors: only the 16 base entries of the 256-color palette fit the model.
+                if (k + 2 < count && params[k + 1] == 5) {
+                    int color = params[k + 2];
+                    if (color < 16) {
+                        if (p == 38) fg = (byte) color;
+                        else bg = (byte) color;
+                    }
+                    k += 2;
+                } else if (k + 1 < count && params[k + 1] == 2) {
+                    k += 4;
+                }
+            }
+        }
+        buffer.setCurrentAttributes(TextAttributes.intern(fg, bg, style));
+    }
+}
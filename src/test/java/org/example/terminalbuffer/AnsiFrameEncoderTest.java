@@ -0,0 +1,158 @@
+package org.example.terminalbuffer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AnsiFrameEncoderTest {
+
+    // Replays encoded frames into a second buffer, standing in for the receiving terminal.
+    private static final class Mirror {
+        final TerminalBuffer source;
+        final AnsiFrameEncoder encoder;
+        final TerminalBuffer target;
+        final VtParser parser;
+
+        Mirror(int width, int height) {
+            source = new TerminalBuffer(width, height, 100);
+            encoder = new AnsiFrameEncoder(source);
+            target = new TerminalBuffer(width, height, 100);
+            parser = new VtParser(target);
+        }
+
+        int sync() {
+            ByteBuffer frame = encoder.encodeFrame();
+            int n = frame.remaining();
+            parser.feed(frame);
+            assertEquals(source.getScreenAsString(), target.getScreenAsString());
+            for (int row = 0; row < source.height(); row++) {
+                for (int col = 0; col < source.width(); col++) {
+                    int global = source.scrollbackSize() + row;
+                    assertSame(source.getAttributesAt(global, col),
+                            target.getAttributesAt(target.scrollbackSize() + row, col));
+                }
+            }
+            assertEquals(source.cursorCol(), target.cursorCol());
+            assertEquals(source.cursorRow(), target.cursorRow());
+            return n;
+        }
+    }
+
+    @Test
+    void unchangedScreenEncodesToNothing() {
+        Mirror m = new Mirror(10, 3);
+        m.source.write("hello");
+        m.sync();
+
+        assertEquals(0, m.sync());
+    }
+
+    @Test
+    void onlyChangedCellsAreSent() {
+        Mirror m = new Mirror(40, 5);
+        m.source.write("the quick brown fox jumps over the dog");
+        m.sync();
+
+        m.source.setCursor(4, 0);
+        m.source.write("QUICK");
+        ByteBuffer frame = m.encoder.encodeFrame();
+        String ansi = new String(frame.array(), 0, frame.limit(), StandardCharsets.UTF_8);
+
+        assertTrue(ansi.contains("QUICK"));
+        assertFalse(ansi.contains("fox"));
+        assertTrue(frame.limit() < 20);
+    }
+
+    @Test
+    void attributesWideCharactersAndErasuresAreMirrored() {
+        Mirror m = new Mirror(8, 3);
+        m.source.setCurrentAttributes((byte) 1, (byte) 12, true, false, true);
+        m.source.write("ab中");
+        m.source.resetAttributes();
+        m.source.write("c");
+        m.sync();
+
+        m.source.setCursor(1, 0);
+        m.source.eraseInLine(0);
+        m.source.setCursor(0, 2);
+        m.source.write("z");
+        m.sync();
+    }
+
+    @Test
+    void scrollIsSentAsScrollSequence() {
+        Mirror m = new Mirror(6, 3);
+        for (int i = 0; i < 3; i++) {
+            m.source.setCursor(0, i);
+            m.source.write("line" + i);
+        }
+        m.sync();
+
+        m.source.scrollUp(1);
+        m.source.setCursor(0, 2);
+        m.source.write("new");
+        ByteBuffer frame = m.encoder.encodeFrame();
+        String ansi = new String(frame.array(), 0, frame.limit(), StandardCharsets.UTF_8);
+        assertTrue(ansi.contains("\u001b[1S"));
+        assertFalse(ansi.contains("line"));
+        m.parser.feed(frame);
+        assertEquals(m.source.getScreenAsString(), m.target.getScreenAsString());
+    }
+
+    @Test
+    void regionScrollsRepaintTheRegionAroundScreenScrolls() {
+        Mirror m = new Mirror(6, 5);
+        for (int i = 0; i < 5; i++) {
+            m.source.setCursor(0, i);
+            m.source.write("line" + i);
+        }
+        m.sync();
+
+        m.source.setScrollRegion(1, 4);
+        m.source.scrollRegionUp(1);
+        m.source.resetScrollRegion();
+        m.source.scrollUp(1);
+        m.source.setScrollRegion(0, 3);
+        m.source.setCursor(0, 1);
+        m.source.insertLines(1);
+        m.source.write("ins");
+        m.sync();
+    }
+
+    @Test
+    void resizeAndResetRepaintEverything() throws Exception {
+        Mirror m = new Mirror(6, 2);
+        m.source.write("abc");
+        m.sync();
+
+        m.source.resize(5, 3);
+        m.target.resize(5, 3);
+        m.sync();
+
+        m.encoder.reset();
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        int written = m.encoder.writeFrame(Channels.newChannel(sink));
+        assertEquals(written, sink.size());
+        assertTrue(sink.toString(StandardCharsets.UTF_8).contains("abc"));
+    }
+
+    @Test
+    void resetResendsAttributesAndCursorPosition() {
+        Mirror m = new Mirror(6, 2);
+        m.source.write("abc");
+        m.sync();
+
+        m.encoder.reset();
+        ByteBuffer frame = m.encoder.encodeFrame();
+        byte[] bytes = new byte[frame.remaining()];
+        frame.get(bytes);
+        String out = new String(bytes, StandardCharsets.UTF_8);
+        assertTrue(out.startsWith("\u001b[0m"), out);
+        assertTrue(out.contains("\u001b[1;1H"), out);
+    }
+}
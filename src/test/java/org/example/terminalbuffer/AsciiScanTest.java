@@ -0,0 +1,70 @@
+package org.example.terminalbuffer;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsciiScanTest {
+
+    private static int scalarPrintableRunEnd(byte[] bytes, int from, int to) {
+        int i = from;
+        while (i < to && bytes[i] >= 0x20 && bytes[i] != 0x7F) i++;
+        return i;
+    }
+
+    private static int scalarAsciiRunEnd(byte[] bytes, int from, int to) {
+        int i = from;
+        while (i < to && bytes[i] >= 0) i++;
+        return i;
+    }
+
+    @Test
+    void findsFirstStopByteAtEveryPosition() {
+        byte[] stops = {0x00, 0x0A, 0x1B, 0x1F, 0x7F, (byte) 0x80, (byte) 0xE2, (byte) 0xFF};
+        for (byte stop : stops) {
+            for (int at = 0; at < 100; at++) {
+                byte[] bytes = new byte[100];
+                java.util.Arrays.fill(bytes, (byte) 'x');
+                bytes[at] = stop;
+                ByteBuffer buf = ByteBuffer.wrap(bytes);
+
+                assertEquals(at, AsciiScan.printableRunEnd(buf, 0, bytes.length));
+                int asciiExpected = stop < 0 ? at : bytes.length;
+                assertEquals(asciiExpected, AsciiScan.asciiRunEnd(buf, 0, bytes.length));
+            }
+        }
+    }
+
+    @Test
+    void matchesScalarScanOnRandomInput() {
+        Random random = new Random(14);
+        for (int round = 0; round < 500; round++) {
+            byte[] bytes = new byte[1 + random.nextInt(300)];
+            for (int i = 0; i < bytes.length; i++) {
+                // Mostly printable ASCII, with the occasional control or UTF-8 byte.
+                int r = random.nextInt(100);
+                bytes[i] = (byte) (r < 97 ? 0x20 + random.nextInt(95) : random.nextInt(256));
+            }
+            int from = random.nextInt(bytes.length);
+            ByteBuffer buf = ByteBuffer.wrap(bytes);
+
+            assertEquals(scalarPrintableRunEnd(bytes, from, bytes.length), AsciiScan.printableRunEnd(buf, from, bytes.length));
+            assertEquals(scalarAsciiRunEnd(bytes, from, bytes.length), AsciiScan.asciiRunEnd(buf, from, bytes.length));
+        }
+    }
+
+    @Test
+    void honoursArrayOffsetAndDirectBuffers() {
+        byte[] bytes = new byte[80];
+        java.util.Arrays.fill(bytes, (byte) 'a');
+        bytes[70] = '\n';
+        ByteBuffer slice = ByteBuffer.wrap(bytes, 10, 70).slice();
+        assertEquals(60, AsciiScan.printableRunEnd(slice, 0, slice.limit()));
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(80).put(bytes).flip();
+        assertEquals(70, AsciiScan.printableRunEnd(direct, 0, direct.limit()));
+    }
+}
@@ -0,0 +1,52 @@
+package org.example.terminalbuffer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CharWidthTest {
+
+    @Test
+    void asciiPrintableIsSingleWidth() {
+        for (int cp = 0x20; cp < 0x7F; cp++) {
+            assertEquals(1, CharWidth.of(cp));
+        }
+    }
+
+    @Test
+    void controlCharactersAreReportedAsControl() {
+        assertEquals(CharWidth.CONTROL, CharWidth.of('\n'));
+        assertEquals(CharWidth.CONTROL, CharWidth.of(0x1B));
+        assertEquals(CharWidth.CONTROL, CharWidth.of(0x7F));
+        assertEquals(CharWidth.CONTROL, CharWidth.of(0x9B));
+        assertEquals(CharWidth.CONTROL, CharWidth.of(-1));
+        assertEquals(CharWidth.CONTROL, CharWidth.of(0x110000));
+    }
+
+    @Test
+    void combiningAndFormatCharactersAreZeroWidth() {
+        assertEquals(0, CharWidth.of(0x0301)); // combining acute accent
+        assertEquals(0, CharWidth.of(0x200D)); // zero width joiner
+        assertEquals(0, CharWidth.of(0xFE0F)); // variation selector 16
+        assertEquals(1, CharWidth.of(0x00AD)); // soft hyphen
+    }
+
+    @Test
+    void eastAsianWideAndFullwidthAreDoubleWidth() {
+        assertEquals(2, CharWidth.of(0x4E2D)); // CJK ideograph
+        assertEquals(2, CharWidth.of(0xAC00)); // Hangul syllable
+        assertEquals(2, CharWidth.of(0x3042)); // Hiragana
+        assertEquals(2, CharWidth.of(0xFF21)); // fullwidth A
+        assertEquals(2, CharWidth.of(0x20000)); // CJK extension B
+        assertEquals(1, CharWidth.of(0xFF71)); // halfwidth katakana
+    }
+
+    @Test
+    void emojiPresentationIsDoubleWidthButTextSymbolsAreNot() {
+        assertEquals(2, CharWidth.of(0x1F600));
+        assertEquals(2, CharWidth.of(0x26A1));
+        assertTrue(CharWidth.isWide(0x1F680));
+        assertEquals(1, CharWidth.of(0x2600)); // sun symbol, text presentation by default
+        assertEquals(1, CharWidth.of(0x00E9));
+    }
+}
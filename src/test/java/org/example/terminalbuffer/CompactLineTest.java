@@ -0,0 +1,66 @@
+package org.example.terminalbuffer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompactLineTest {
+
+    private static final TextAttributes RED = TextAttributes.intern((byte) 1, TextAttributes.DEFAULT_COLOR, 0);
+    private static final TextAttributes BLUE_BG = TextAttributes.intern(TextAttributes.DEFAULT_COLOR, (byte) 4, 0);
+
+    @Test
+    void asciiLineRoundTrips() {
+        Line line = new Line(6);
+        line.setCell(0, 'a', RED);
+        line.setCell(1, 'b', RED);
+        line.setCell(2, 'c', TextAttributes.defaults());
+
+        CompactLine c = CompactLine.of(line);
+
+        assertEquals(6, c.width());
+        assertEquals(3, c.length());
+        assertEquals("abc   ", c.toPlainString());
+        for (int col = 0; col < 6; col++) {
+            assertEquals(line.codePointAt(col), c.codePointAt(col));
+            assertEquals(line.attrIdAt(col), c.attrIdAt(col));
+        }
+    }
+
+    @Test
+    void wideAndNonAsciiCodePointsRoundTrip() {
+        Line line = new Line(5);
+        line.setCell(0, 0xE9, TextAttributes.defaults());
+        line.setCell(1, 0x1F600, RED);
+        line.setCell(2, Cell.CONTINUATION, RED);
+
+        CompactLine c = CompactLine.of(line);
+
+        assertEquals(line.toPlainString(), c.toPlainString());
+        assertEquals(0x1F600, c.codePointAt(1));
+        assertEquals(Cell.CONTINUATION, c.codePointAt(2));
+        assertSame(RED, c.attrsAt(2));
+        assertSame(TextAttributes.defaults(), c.attrsAt(0));
+    }
+
+    @Test
+    void emptyCellsWithColoredAttributesAreKept() {
+        Line line = new Line(4);
+        line.setCell(0, 'x', TextAttributes.defaults());
+        line.setCell(2, Cell.EMPTY, BLUE_BG);
+
+        CompactLine c = CompactLine.of(line);
+
+        assertEquals(3, c.length());
+        assertSame(BLUE_BG, c.attrsAt(2));
+        assertSame(TextAttributes.defaults(), c.attrsAt(3));
+    }
+
+    @Test
+    void blankLineStoresNothing() {
+        CompactLine c = CompactLine.of(new Line(3));
+        assertEquals(0, c.length());
+        assertEquals("   ", c.toPlainString());
+        assertEquals(Cell.EMPTY, c.codePointAt(2));
+    }
+}
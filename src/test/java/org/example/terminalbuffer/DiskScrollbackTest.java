@@ -0,0 +1,123 @@
+package org.example.terminalbuffer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DiskScrollbackTest {
+
+    private static CompactLine lineOf(String text, TextAttributes attrs) {
+        Line line = new Line(Math.max(1, text.codePointCount(0, text.length())) + 2);
+        int col = 0;
+        for (int i = 0; i < text.length(); ) {
+            int cp = text.codePointAt(i);
+            line.setCell(col++, cp, attrs);
+            i += Character.charCount(cp);
+        }
+        return CompactLine.of(line);
+    }
+
+    @Test
+    void linesRoundTripAcrossSegments(@TempDir Path dir) {
+        TextAttributes bold = TextAttributes.intern((byte) 2, (byte) 3, TextAttributes.BOLD);
+        try (DiskScrollback disk = new DiskScrollback(dir, 3, 256)) {
+            for (int i = 0; i < 20; i++) {
+                disk.append(lineOf(i % 2 == 0 ? "line" + i : "é" + i, bold));
+            }
+
+            assertEquals(20, disk.size());
+            for (int i = 19; i >= 0; i--) {
+                CompactLine line = disk.get(i);
+                String expected = i % 2 == 0 ? "line" + i : "é" + i;
+                assertEquals(expected, line.toPlainString().trim());
+                assertSame(bold, line.attrsAt(0));
+            }
+        }
+    }
+
+    @Test
+    void oversizedLineGetsItsOwnSegment(@TempDir Path dir) {
+        try (DiskScrollback disk = new DiskScrollback(dir, 16, 64)) {
+            String longText = "x".repeat(500);
+            disk.append(lineOf("a", TextAttributes.defaults()));
+            disk.append(lineOf(longText, TextAttributes.defaults()));
+            disk.append(lineOf("b", TextAttributes.defaults()));
+
+            assertEquals("a", disk.get(0).toPlainString().trim());
+            assertEquals(longText, disk.get(1).toPlainString().trim());
+            assertEquals("b", disk.get(2).toPlainString().trim());
+        }
+    }
+
+    @Test
+    void bufferReadsSpilledLinesByGlobalRow(@TempDir Path dir) {
+        try (TerminalBuffer b = new TerminalBuffer(4, 1, 2)) {
+            b.enableDiskSpill(dir);
+            for (int i = 0; i < 10; i++) {
+                b.setCursor(0, 0);
+                b.write("L" + i);
+                b.insertEmptyLineAtBottom();
+            }
+
+            assertEquals(10, b.scrollbackSize());
+            assertEquals(11, b.totalLines());
+            for (int i = 0; i < 10; i++) {
+                assertEquals("L" + i + "  ", b.getLineAsString(i));
+            }
+            assertEquals('L', b.getCodePointAt(0, 0));
+
+            b.clearAll();
+            assertEquals(0, b.scrollbackSize());
+        }
+    }
+
+    @Test
+    void bulkScrollSpillsInsteadOfDiscarding(@TempDir Path dir) {
+        try (TerminalBuffer b = new TerminalBuffer(2, 2, 1)) {
+            b.enableDiskSpill(dir);
+            b.write("ab");
+
+            b.scrollUp(5);
+
+            assertEquals(5, b.scrollbackSize());
+            assertEquals("ab", b.getLineAsString(0));
+            assertThrows(IllegalStateException.class, () -> b.enableDiskSpill(dir));
+        }
+    }
+
+    @Test
+    void viewsKeepTheirFilesAcrossClearUntilClose(@TempDir Path dir) throws Exception {
+        DiskScrollback disk = new DiskScrollback(dir, 2, 256);
+        disk.append(lineOf("a", TextAttributes.defaults()));
+        disk.clear();
+        assertEquals(0, segmentFiles(dir));
+
+        for (int i = 0; i < 3; i++) {
+            disk.append(lineOf("old" + i, TextAttributes.defaults()));
+        }
+        DiskScrollback.View view = disk.view();
+        disk.clear();
+        for (int i = 0; i < 3; i++) {
+            disk.append(lineOf("new" + i, TextAttributes.defaults()));
+        }
+
+        assertEquals(4, segmentFiles(dir));
+        assertEquals("old0", view.get(0).toPlainString().trim());
+        assertEquals("old2", view.get(2).toPlainString().trim());
+        assertEquals("new0", disk.get(0).toPlainString().trim());
+
+        disk.close();
+        assertThrows(IllegalStateException.class, () -> view.get(0));
+    }
+
+    private static long segmentFiles(Path dir) throws Exception {
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files.filter(p -> p.getFileName().toString().startsWith("segment-")).count();
+        }
+    }
+}
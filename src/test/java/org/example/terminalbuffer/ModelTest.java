@@ -2,6 +2,13 @@ package org.example.terminalbuffer;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class ModelTest {
@@ -23,6 +30,12 @@ public class ModelTest {
         assertThrows(IllegalArgumentException.class, () -> new TextAttributes((byte) 0, (byte) -2, 0));
     }
 
+    @Test
+    void invalidStyleMaskThrows() {
+        assertThrows(IllegalArgumentException.class, () -> new TextAttributes((byte) 0, (byte) 0, 8));
+        assertThrows(IllegalArgumentException.class, () -> TextAttributes.intern((byte) 0, (byte) 0, -1));
+    }
+
     @Test
     void newLineIsEmpty() {
         Line line = new Line(5);
@@ -43,4 +56,96 @@ public class ModelTest {
         assertEquals("A  ", a.toPlainString());
         assertEquals("B  ", b.toPlainString());
     }
+
+    @Test
+    void narrowingKeepsTheArrayAndWideningClearsOnlyExposedCells() {
+        Line line = new Line(6);
+        for (int i = 0; i < 6; i++) line.setCell(i, 'x', TextAttributes.defaults());
+
+        line.setWidth(3);
+        assertEquals("xxx", line.toPlainString());
+        assertEquals(6, line.capacity());
+
+        line.setWidth(5);
+        assertEquals("xxx  ", line.toPlainString());
+        assertEquals(6, line.capacity());
+
+        line.setWidth(7);
+        assertEquals("xxx    ", line.toPlainString());
+        assertEquals(9, line.capacity());
+    }
+
+    @Test
+    void defaultAttributesHaveIdZero() {
+        assertEquals(0, TextAttributes.defaults().id());
+        assertSame(TextAttributes.defaults(), TextAttributes.byId(0));
+    }
+
+    @Test
+    void attributeIdsResolveToInternedInstances() {
+        TextAttributes a = new TextAttributes((byte) 5, (byte) 6, TextAttributes.BOLD);
+        TextAttributes interned = TextAttributes.intern(a);
+        assertEquals(interned.id(), a.id());
+        assertSame(interned, TextAttributes.byId(a.id()));
+    }
+
+    @Test
+    void lineStoresCodePointAndAttributesPerCell() {
+        Line line = new Line(3);
+        TextAttributes red = TextAttributes.intern((byte) 1, TextAttributes.DEFAULT_COLOR, TextAttributes.ITALIC);
+        line.setCell(1, 0x1F600, red);
+        line.setCell(2, Cell.CONTINUATION, red);
+
+        assertEquals(0x1F600, line.codePointAt(1));
+        assertEquals(Cell.CONTINUATION, line.codePointAt(2));
+        assertSame(red, line.attrsAt(1));
+        assertEquals(red.id(), line.attrIdAt(2));
+        assertSame(TextAttributes.defaults(), line.attrsAt(0));
+
+        line.clear();
+        assertEquals(Cell.EMPTY, line.codePointAt(1));
+        assertSame(TextAttributes.defaults(), line.attrsAt(1));
+    }
+
+    @Test
+    void byIdRoundTripsEveryCombination() {
+        for (byte fg = -1; fg < 16; fg++) {
+            for (byte bg = -1; bg < 16; bg++) {
+                for (int style = 0; style < 8; style++) {
+                    TextAttributes a = TextAttributes.intern(fg, bg, style);
+                    assertSame(a, TextAttributes.byId(a.id()));
+                    assertEquals(fg, a.fg());
+                    assertEquals(bg, a.bg());
+                    assertEquals(style, a.styleMask());
+                }
+            }
+        }
+    }
+
+    @Test
+    void concurrentInternReturnsSingleInstance() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Callable<TextAttributes[]>> tasks = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                tasks.add(() -> {
+                    TextAttributes[] seen = new TextAttributes[16 * 8];
+                    for (int i = 0; i < seen.length; i++) {
+                        seen[i] = TextAttributes.intern((byte) (i / 8), (byte) 15, i % 8);
+                    }
+                    return seen;
+                });
+            }
+            List<Future<TextAttributes[]>> results = pool.invokeAll(tasks);
+            TextAttributes[] first = results.get(0).get();
+            for (Future<TextAttributes[]> f : results) {
+                TextAttributes[] other = f.get();
+                for (int i = 0; i < first.length; i++) {
+                    assertSame(first[i], other[i]);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
 }
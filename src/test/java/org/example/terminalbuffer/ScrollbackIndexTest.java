@@ -0,0 +1,84 @@
+package org.example.terminalbuffer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScrollbackIndexTest {
+
+    private static void scrollLine(TerminalBuffer buffer, String text) {
+        buffer.setCursor(0, buffer.height() - 1);
+        buffer.write(text);
+        buffer.insertEmptyLineAtBottom();
+    }
+
+    private static int[] needle(String s) {
+        return s.codePoints().toArray();
+    }
+
+    @Test
+    void candidatesNarrowToLinesContainingTheTrigrams() {
+        ScrollbackIndex index = new ScrollbackIndex(Runnable::run, 0);
+        String[] lines = {"alpha beta", "gamma delta", "beta gamma", "nothing here"};
+        for (int i = 0; i < lines.length; i++) {
+            Line line = new Line(16);
+            for (int c = 0; c < lines[i].length(); c++) line.setCell(c, lines[i].charAt(c), TextAttributes.defaults());
+            index.add(i, CompactLine.of(line));
+        }
+
+        int[] rows = index.candidates(needle("beta"), 0, lines.length);
+
+        assertArrayEquals(new int[]{0, 2}, rows);
+        assertArrayEquals(new int[]{1}, index.candidates(needle("beta"), 1, lines.length));
+        assertArrayEquals(new int[0], index.candidates(needle("zzz"), 0, lines.length));
+    }
+
+    @Test
+    void indexedSearchMatchesScanAcrossEvictionAndScreen() {
+        TerminalBuffer indexed = new TerminalBuffer(24, 3, 500);
+        TerminalBuffer scanned = new TerminalBuffer(24, 3, 500);
+        indexed.enableSearchIndex(Runnable::run);
+        for (int i = 0; i < 2000; i++) {
+            String text = (i % 13 == 0 ? "needle " : "hay ") + i + " 中文";
+            scrollLine(indexed, text);
+            scrollLine(scanned, text);
+        }
+        indexed.write("needle on screen");
+        scanned.write("needle on screen");
+
+        for (String query : new String[]{"needle", "文", "中文", "hay 19", "dle 1", "9 中"}) {
+            List<SearchMatch> expected = scanned.search(query).collect(Collectors.toList());
+            assertEquals(expected, indexed.search(query).collect(Collectors.toList()), query);
+            assertEquals(expected, indexed.search(query).parallel().collect(Collectors.toList()), query);
+        }
+        assertEquals(scanned.search("needle", 100, 300).collect(Collectors.toList()),
+                indexed.search("needle", 100, 300).collect(Collectors.toList()));
+    }
+
+    @Test
+    void linesFromBeforeEnablingOrClearAreHandled() throws InterruptedException {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        TerminalBuffer buffer = new TerminalBuffer(20, 2, 1000);
+        scrollLine(buffer, "early needle");
+        buffer.enableSearchIndex(executor);
+        for (int i = 0; i < 300; i++) {
+            scrollLine(buffer, i == 150 ? "late needle" : "line " + i);
+        }
+
+        // Rows the worker has not indexed yet are still searched, so the result does not depend on timing.
+        List<SearchMatch> matches = buffer.search("needle").collect(Collectors.toList());
+        assertEquals(List.of(new SearchMatch(1, 6), new SearchMatch(152, 5)), matches);
+
+        buffer.clearAll();
+        scrollLine(buffer, "after needle");
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(List.of(new SearchMatch(1, 6)), buffer.search("needle").collect(Collectors.toList()));
+    }
+}
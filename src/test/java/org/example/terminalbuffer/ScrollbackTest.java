@@ -0,0 +1,146 @@
+package org.example.terminalbuffer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScrollbackTest {
+
+    private static CompactLine lineOf(int n) {
+        Line line = new Line(8);
+        String s = Integer.toString(n);
+        for (int i = 0; i < s.length(); i++) {
+            line.setCell(i, s.charAt(i), TextAttributes.defaults());
+        }
+        return CompactLine.of(line);
+    }
+
+    @Test
+    void chunksAreAllocatedOnDemand() {
+        Scrollback sb = new Scrollback(1_000_000);
+        assertEquals(0, sb.allocatedChunks());
+
+        sb.push(lineOf(0));
+        assertEquals(1, sb.allocatedChunks());
+
+        for (int i = 1; i <= Scrollback.CHUNK_SIZE; i++) {
+            sb.push(lineOf(i));
+        }
+        assertEquals(2, sb.allocatedChunks());
+    }
+
+    @Test
+    void randomAccessAcrossChunksAfterEviction() {
+        int max = Scrollback.CHUNK_SIZE * 2 + 17;
+        Scrollback sb = new Scrollback(max);
+        int pushed = Scrollback.CHUNK_SIZE * 7 + 5;
+        for (int i = 0; i < pushed; i++) {
+            sb.push(lineOf(i));
+        }
+
+        assertEquals(max, sb.size());
+        for (int i = 0; i < max; i++) {
+            assertEquals(Integer.toString(pushed - max + i), sb.get(i).toPlainString().trim());
+        }
+        assertTrue(sb.allocatedChunks() <= max / Scrollback.CHUNK_SIZE + 2);
+    }
+
+    @Test
+    void clearReleasesAllChunks() {
+        Scrollback sb = new Scrollback(10_000);
+        for (int i = 0; i < 1000; i++) {
+            sb.push(lineOf(i));
+        }
+
+        sb.clear();
+
+        assertEquals(0, sb.size());
+        assertEquals(0, sb.allocatedChunks());
+        sb.push(lineOf(42));
+        assertEquals("42", sb.get(0).toPlainString().trim());
+    }
+
+    @Test
+    void zeroCapacityKeepsNothing() {
+        Scrollback sb = new Scrollback(0);
+        sb.push(lineOf(1));
+        assertEquals(0, sb.size());
+        assertEquals(0, sb.allocatedChunks());
+    }
+
+    @Test
+    void coldChunksAreCompressedAndStillReadable() {
+        int max = Scrollback.CHUNK_SIZE * 4;
+        Scrollback sb = new Scrollback(max);
+        sb.enableCompression(Scrollback.CHUNK_SIZE, Runnable::run);
+        int pushed = Scrollback.CHUNK_SIZE * 6 + 3;
+        for (int i = 0; i < pushed; i++) {
+            sb.push(lineOf(i));
+        }
+
+        assertTrue(sb.compressedChunks() >= 2);
+        for (int i = 0; i < max; i++) {
+            assertEquals(Integer.toString(pushed - max + i), sb.get(i).toPlainString().trim());
+        }
+    }
+
+    @Test
+    void evictionFromCompressedChunkReturnsTheOldestLine() {
+        Scrollback sb = new Scrollback(Scrollback.CHUNK_SIZE * 2);
+        sb.enableCompression(0, Runnable::run);
+        for (int i = 0; i < Scrollback.CHUNK_SIZE * 2; i++) {
+            sb.push(lineOf(i));
+        }
+        assertEquals(1, sb.compressedChunks());
+
+        assertEquals("0", sb.push(lineOf(-1)).toPlainString().trim());
+        assertEquals("1", sb.get(0).toPlainString().trim());
+    }
+
+    @Test
+    void enablingCompressionLaterCompressesExistingColdChunks() {
+        Scrollback sb = new Scrollback(100_000);
+        for (int i = 0; i < Scrollback.CHUNK_SIZE * 5; i++) {
+            sb.push(lineOf(i));
+        }
+
+        sb.enableCompression(Scrollback.CHUNK_SIZE, Runnable::run);
+
+        assertEquals(3, sb.compressedChunks());
+        assertEquals("300", sb.get(300).toPlainString().trim());
+    }
+
+    @Test
+    void pushNeverInflatesWhenTheEvictedLineIsNotWanted() {
+        int max = Scrollback.CHUNK_SIZE * 3;
+        Scrollback sb = new Scrollback(max);
+        sb.enableCompression(0, Runnable::run);
+        for (int i = 0; i < Scrollback.CHUNK_SIZE * 10; i++) {
+            assertNull(sb.push(lineOf(i), false));
+        }
+
+        assertTrue(sb.compressedChunks() >= 2);
+        assertEquals(0, sb.inflatedChunks());
+    }
+
+    @Test
+    void keepingEvictedLinesInflatesOnceAndStopsCompression() {
+        int max = Scrollback.CHUNK_SIZE * 3;
+        Scrollback sb = new Scrollback(max);
+        sb.enableCompression(0, Runnable::run);
+        for (int i = 0; i < max; i++) {
+            sb.push(lineOf(i));
+        }
+        assertEquals(2, sb.compressedChunks());
+
+        sb.keepEvictable();
+        assertEquals(0, sb.compressedChunks());
+        int inflated = sb.inflatedChunks();
+        for (int i = 0; i < Scrollback.CHUNK_SIZE * 4; i++) {
+            assertEquals(Integer.toString(i), sb.push(lineOf(max + i), true).toPlainString().trim());
+        }
+
+        assertEquals(0, sb.compressedChunks());
+        assertEquals(inflated, sb.inflatedChunks());
+    }
+}
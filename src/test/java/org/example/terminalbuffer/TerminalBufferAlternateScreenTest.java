@@ -0,0 +1,101 @@
+package org.example.terminalbuffer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TerminalBufferAlternateScreenTest {
+
+    @Test
+    void alternateScreenStartsEmptyAndMainScreenComesBack() {
+        TerminalBuffer b = new TerminalBuffer(4, 2, 10);
+        b.write("main");
+        b.setCursor(2, 1);
+        b.setCurrentAttributes((byte) 1, (byte) 2, true, false, false);
+        TextAttributes attrs = b.currentAttributes();
+
+        b.enterAlternateScreen();
+        assertTrue(b.isAlternateScreen());
+        assertEquals("    \n    ", b.getScreenAsString());
+        assertEquals(2, b.cursorCol());
+        assertEquals(1, b.cursorRow());
+
+        b.resetAttributes();
+        b.setCursor(0, 0);
+        b.write("alt");
+        b.exitAlternateScreen();
+
+        assertFalse(b.isAlternateScreen());
+        assertEquals("main\n    ", b.getScreenAsString());
+        assertEquals(2, b.cursorCol());
+        assertEquals(1, b.cursorRow());
+        assertSame(attrs, b.currentAttributes());
+    }
+
+    @Test
+    void switchingSwapsLinesWithoutCopying() {
+        TerminalBuffer b = new TerminalBuffer(4, 2, 10);
+        b.write("main");
+        Line mainTop = b.screenLine(0);
+
+        b.enterAlternateScreen();
+        Line altTop = b.screenLine(0);
+        b.exitAlternateScreen();
+        assertSame(mainTop, b.screenLine(0));
+
+        b.enterAlternateScreen();
+        assertSame(altTop, b.screenLine(0));
+        assertEquals("    \n    ", b.getScreenAsString());
+    }
+
+    @Test
+    void alternateScreenNeverFeedsScrollback() {
+        TerminalBuffer b = new TerminalBuffer(4, 2, 10);
+        b.write("keep");
+        b.lineFeed();
+        b.lineFeed();
+        assertEquals(1, b.scrollbackSize());
+
+        b.enterAlternateScreen();
+        for (int i = 0; i < 5; i++) {
+            b.write("x" + i);
+            b.lineFeed();
+        }
+        b.scrollUp(3);
+        assertEquals(1, b.scrollbackSize());
+        assertEquals("keep", b.getLineAsString(0));
+    }
+
+    @Test
+    void resizeOnTheAlternateScreenReflowsTheMainScreen() {
+        TerminalBuffer b = new TerminalBuffer(4, 2, 10);
+        b.write("ab");
+        b.writeCodePoint('c');
+        b.writeCodePoint('d');
+        b.writeCodePoint('中');
+        b.setCursor(0, 1);
+
+        b.enterAlternateScreen();
+        b.setCursor(0, 1);
+        b.write("zz");
+        b.resize(2, 3);
+        assertEquals("  \nzz\n  ", b.getScreenAsString());
+        assertEquals(0, b.scrollbackSize());
+
+        b.exitAlternateScreen();
+        assertEquals("ab\ncd\n中", b.getScreenAsString().stripTrailing());
+        assertEquals(0, b.cursorCol());
+        assertEquals(2, b.cursorRow());
+    }
+
+    @Test
+    void clearAllReturnsToTheMainScreen() {
+        TerminalBuffer b = new TerminalBuffer(4, 2, 10);
+        b.enterAlternateScreen();
+        b.write("alt");
+        b.clearAll();
+
+        assertFalse(b.isAlternateScreen());
+        assertEquals("    \n    ", b.getScreenAsString());
+    }
+}
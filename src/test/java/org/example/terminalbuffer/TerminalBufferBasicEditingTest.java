@@ -59,4 +59,24 @@ public class TerminalBufferBasicEditingTest {
         b.write("xy");
         assertEquals("abc\nxy ", b.getScreenAsString());
     }
+
+    @Test
+    void autoWrapContinuesOnTheNextRowOnlyWhenMorePrints() {
+        TerminalBuffer b = new TerminalBuffer(4, 3, 10);
+        b.setAutoWrap(true);
+        b.write("abcd");
+        assertEquals(3, b.cursorCol());
+        assertEquals(0, b.cursorRow());
+
+        b.write("ef中");
+        assertEquals("abcd\nef中 \n    ", b.getScreenAsString());
+        assertEquals(3, b.cursorCol());
+        assertEquals(1, b.cursorRow());
+
+        b.setCursor(3, 1);
+        b.write("g");
+        assertEquals(1, b.cursorRow());
+        assertTrue(b.screenLine(0).isWrapped());
+        assertFalse(b.screenLine(1).isWrapped());
+    }
 }
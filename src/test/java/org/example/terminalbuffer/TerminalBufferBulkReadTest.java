@@ -0,0 +1,95 @@
+package org.example.terminalbuffer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TerminalBufferBulkReadTest {
+
+    private static TerminalBuffer bufferWithHistory() {
+        TerminalBuffer buffer = new TerminalBuffer(6, 2, 10);
+        buffer.write("ab");
+        buffer.setCurrentAttributes((byte) 1, TextAttributes.DEFAULT_COLOR, true, false, false);
+        buffer.write("cd");
+        buffer.resetAttributes();
+        buffer.write("e");
+        buffer.setCursor(0, 1);
+        buffer.write("中x");
+        buffer.insertEmptyLineAtBottom();
+        buffer.insertEmptyLineAtBottom();
+        buffer.setCursor(0, 1);
+        buffer.setCurrentAttributes((byte) 4, (byte) 2, false, false, true);
+        buffer.write("zz");
+        return buffer;
+    }
+
+    @Test
+    void copyRectMatchesPerCellGettersAcrossScrollbackAndScreen() {
+        TerminalBuffer buffer = bufferWithHistory();
+        int rows = buffer.totalLines();
+        int cols = buffer.width() - 1;
+        int[] codePoints = new int[rows * cols];
+        int[] attrIds = new int[rows * cols];
+
+        buffer.copyRect(0, 1, rows, cols, codePoints, attrIds);
+
+        for (int row = 0; row < rows; row++) {
+            for (int col = 1; col < buffer.width(); col++) {
+                int i = row * cols + col - 1;
+                assertEquals(buffer.getCodePointAt(row, col), codePoints[i], "cp at " + row + "," + col);
+                assertEquals(buffer.getAttributesAt(row, col), TextAttributes.byId(attrIds[i]), "attrs at " + row + "," + col);
+            }
+        }
+    }
+
+    @Test
+    void copyRowFillsOnlyTheRequestedArray() {
+        TerminalBuffer buffer = bufferWithHistory();
+        int[] codePoints = new int[buffer.width()];
+
+        buffer.copyRow(1, codePoints, null);
+
+        assertArrayEquals(new int[]{'中', Cell.CONTINUATION, 'x', Cell.EMPTY, Cell.EMPTY, Cell.EMPTY}, codePoints);
+    }
+
+    @Test
+    void forEachCellVisitsRowsInOrder() {
+        TerminalBuffer buffer = bufferWithHistory();
+        List<String> seen = new ArrayList<>();
+
+        buffer.forEachCell(3, 4, (row, col, cp, attrId) -> {
+            if (cp > 0) seen.add(row + ":" + col + ":" + Character.toString(cp) + ":" + TextAttributes.byId(attrId).underline());
+        });
+
+        assertEquals(List.of("3:0:z:true", "3:1:z:true"), seen);
+    }
+
+    @Test
+    void rejectsOutOfBoundsRectsAndShortArrays() {
+        TerminalBuffer buffer = bufferWithHistory();
+        int[] row = new int[buffer.width()];
+
+        assertThrows(IllegalArgumentException.class, () -> buffer.copyRow(buffer.totalLines(), row, null));
+        assertThrows(IllegalArgumentException.class, () -> buffer.copyRect(0, 2, 1, buffer.width() - 1, row, null));
+        assertThrows(IndexOutOfBoundsException.class, () -> buffer.copyRect(0, 0, 2, buffer.width(), row, null));
+        assertThrows(IllegalArgumentException.class, () -> buffer.forEachCell(2, 1, (r, c, cp, a) -> { }));
+    }
+
+    @Test
+    void snapshotCopiesTheContentItWasTakenWith() {
+        TerminalBuffer buffer = bufferWithHistory();
+        TerminalSnapshot snapshot = buffer.snapshot();
+        buffer.setCursor(0, 1);
+        buffer.write("qq");
+
+        int[] codePoints = new int[2];
+        int[] attrIds = new int[2];
+        snapshot.copyRect(3, 0, 1, 2, codePoints, attrIds);
+
+        assertArrayEquals(new int[]{'z', 'z'}, codePoints);
+        assertTrue(TextAttributes.byId(attrIds[1]).underline());
+    }
+}
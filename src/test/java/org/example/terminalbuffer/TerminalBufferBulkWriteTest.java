@@ -0,0 +1,100 @@
+package org.example.terminalbuffer;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TerminalBufferBulkWriteTest {
+
+    private static String emoji() {
+        return new String(Character.toChars(0x1F600)); // 😀
+    }
+
+    @Test
+    void writeAcceptsCharSequence() {
+        TerminalBuffer b = new TerminalBuffer(6, 1, 10);
+        b.write(new StringBuilder("abc"));
+        assertEquals("abc   ", b.getLineAsString(0));
+        assertEquals(3, b.cursorCol());
+    }
+
+    @Test
+    void writeCharArraySliceWritesOnlyTheSlice() {
+        TerminalBuffer b = new TerminalBuffer(6, 1, 10);
+        b.write("--hello--".toCharArray(), 2, 5);
+        assertEquals("hello ", b.getLineAsString(0));
+        assertThrows(IndexOutOfBoundsException.class, () -> b.write(new char[3], 2, 2));
+    }
+
+    @Test
+    void runLongerThanLineOverwritesLastColumn() {
+        TerminalBuffer b = new TerminalBuffer(5, 1, 10);
+        b.setCursor(1, 0);
+        b.write("abcdefg");
+        assertEquals(" abcg", b.getLineAsString(0));
+        assertEquals(4, b.cursorCol());
+    }
+
+    @Test
+    void runsAndWideCharactersMix() {
+        TerminalBuffer b = new TerminalBuffer(8, 2, 10);
+        b.setCurrentAttributes((byte) 2, TextAttributes.DEFAULT_COLOR, true, false, false);
+        b.write("ab" + emoji() + "cd");
+
+        assertEquals("ab" + emoji() + " cd  ", b.getLineAsString(0));
+        assertEquals(Cell.CONTINUATION, b.getCodePointAt(0, 3));
+        assertEquals(6, b.cursorCol());
+        for (int col = 0; col < 6; col++) {
+            assertEquals(2, b.getAttributesAt(0, col).fg());
+        }
+        assertTrue(b.getAttributesAt(0, 5).bold());
+    }
+
+    @Test
+    void writeUtf8ByteBufferDecodesMultiByteSequences() {
+        TerminalBuffer b = new TerminalBuffer(8, 1, 10);
+        ByteBuffer in = ByteBuffer.wrap(("hé" + emoji() + "!").getBytes(StandardCharsets.UTF_8));
+
+        b.write(in);
+
+        assertFalse(in.hasRemaining());
+        assertEquals('h', b.getCodePointAt(0, 0));
+        assertEquals(0xE9, b.getCodePointAt(0, 1));
+        assertEquals(0x1F600, b.getCodePointAt(0, 2));
+        assertEquals('!', b.getCodePointAt(0, 4));
+    }
+
+    @Test
+    void writeUtf8LeavesIncompleteTrailingSequenceUnconsumed() {
+        TerminalBuffer b = new TerminalBuffer(8, 1, 10);
+        byte[] bytes = ("a" + emoji()).getBytes(StandardCharsets.UTF_8);
+        ByteBuffer in = ByteBuffer.allocate(16);
+        in.put(bytes, 0, 3).flip();
+
+        b.write(in);
+        assertEquals(1, in.position());
+        assertEquals("a       ", b.getLineAsString(0));
+
+        in.compact();
+        in.put(bytes, 3, bytes.length - 3).flip();
+        b.write(in);
+
+        assertFalse(in.hasRemaining());
+        assertEquals(0x1F600, b.getCodePointAt(0, 1));
+    }
+
+    @Test
+    void writeUtf8ReplacesMalformedBytes() {
+        TerminalBuffer b = new TerminalBuffer(6, 1, 10);
+        b.write(ByteBuffer.wrap(new byte[]{'x', (byte) 0xC0, (byte) 0xED, (byte) 0xA0, 'y'}));
+
+        assertEquals('x', b.getCodePointAt(0, 0));
+        assertEquals(0xFFFD, b.getCodePointAt(0, 1));
+        assertEquals(0xFFFD, b.getCodePointAt(0, 2));
+        assertEquals(0xFFFD, b.getCodePointAt(0, 3));
+        assertEquals('y', b.getCodePointAt(0, 4));
+    }
+}
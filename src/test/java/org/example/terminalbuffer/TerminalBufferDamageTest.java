@@ -0,0 +1,89 @@
+package org.example.terminalbuffer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TerminalBufferDamageTest {
+
+    private static TerminalBuffer cleanBuffer(int width, int height) {
+        TerminalBuffer buffer = new TerminalBuffer(width, height, 10);
+        assertTrue(buffer.collectDamage().fullRedraw());
+        assertTrue(buffer.collectDamage().isEmpty());
+        return buffer;
+    }
+
+    @Test
+    void writeMarksOnlyTheTouchedColumns() {
+        TerminalBuffer buffer = cleanBuffer(10, 3);
+        buffer.setCursor(2, 1);
+        buffer.write("abc");
+
+        Damage damage = buffer.collectDamage();
+        assertFalse(damage.fullRedraw());
+        assertEquals(0, damage.scrollDelta());
+        assertFalse(damage.isDirty(0));
+        assertTrue(damage.isDirty(1));
+        assertEquals(2, damage.dirtyFrom(1));
+        assertEquals(5, damage.dirtyTo(1));
+        assertFalse(damage.isDirty(2));
+
+        assertTrue(buffer.collectDamage().isEmpty());
+    }
+
+    @Test
+    void insertDamagesEveryRowOfTheCarryChain() {
+        TerminalBuffer buffer = new TerminalBuffer(4, 3, 10);
+        buffer.write("abcd");
+        buffer.collectDamage();
+
+        buffer.setCursor(1, 0);
+        buffer.insert("XY");
+
+        Damage damage = buffer.collectDamage();
+        assertEquals(1, damage.dirtyFrom(0));
+        assertEquals(4, damage.dirtyTo(0));
+        assertTrue(damage.isDirty(1));
+        assertFalse(damage.isDirty(2));
+    }
+
+    @Test
+    void scrollReportsDeltaAndKeepsDamageWithMovedLines() {
+        TerminalBuffer buffer = cleanBuffer(5, 3);
+        buffer.setCursor(1, 2);
+        buffer.write("x");
+        buffer.scrollUp(1);
+
+        Damage damage = buffer.collectDamage();
+        assertEquals(1, damage.scrollDelta());
+        assertFalse(damage.isDirty(0));
+        assertEquals(1, damage.dirtyFrom(1));
+        assertEquals(2, damage.dirtyTo(1));
+        assertEquals(0, damage.dirtyFrom(2));
+        assertEquals(5, damage.dirtyTo(2));
+    }
+
+    @Test
+    void resizeAndClearRequestFullRedraw() {
+        TerminalBuffer buffer = cleanBuffer(5, 3);
+        buffer.resize(6, 2);
+        Damage damage = buffer.collectDamage();
+        assertTrue(damage.fullRedraw());
+        assertEquals(2, damage.rows());
+        assertEquals(6, damage.dirtyTo(1));
+
+        buffer.clearScreen();
+        assertTrue(buffer.collectDamage().fullRedraw());
+    }
+
+    @Test
+    void collectIntoCallerOwnedInstance() {
+        TerminalBuffer buffer = cleanBuffer(5, 2);
+        Damage mine = new Damage();
+        buffer.fillLine(1, 'z');
+
+        assertSame(mine, buffer.collectDamage(mine));
+        assertEquals(0, mine.dirtyFrom(1));
+        assertEquals(5, mine.dirtyTo(1));
+    }
+}
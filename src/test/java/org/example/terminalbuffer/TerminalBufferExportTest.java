@@ -0,0 +1,78 @@
+package org.example.terminalbuffer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TerminalBufferExportTest {
+
+    private static TerminalBuffer filled() {
+        TerminalBuffer buffer = new TerminalBuffer(6, 3, 100);
+        for (int i = 0; i < 10; i++) {
+            buffer.setCursor(0, 2);
+            buffer.write(i % 3 == 0 ? "中é" + i : "😀" + i);
+            buffer.insertEmptyLineAtBottom();
+        }
+        buffer.write("end");
+        return buffer;
+    }
+
+    @Test
+    void appendableExportMatchesGetAllAsString() throws Exception {
+        TerminalBuffer buffer = filled();
+        StringWriter out = new StringWriter();
+
+        buffer.exportTo(out);
+
+        assertEquals(buffer.getAllAsString(), out.toString());
+    }
+
+    @Test
+    void channelExportIsUtf8OfTheSameText() throws Exception {
+        TerminalBuffer buffer = filled();
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+
+        long written = buffer.exportTo(Channels.newChannel(sink));
+
+        assertEquals(sink.size(), written);
+        assertEquals(buffer.getAllAsString(), sink.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void channelExportFlushesLargeHistoriesInPieces() throws Exception {
+        TerminalBuffer buffer = new TerminalBuffer(200, 2, 2000);
+        for (int i = 0; i < 1000; i++) {
+            buffer.setCursor(0, 1);
+            buffer.write("€".repeat(150) + i);
+            buffer.insertEmptyLineAtBottom();
+        }
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+
+        buffer.exportTo(Channels.newChannel(sink), 10, 900);
+
+        StringWriter expected = new StringWriter();
+        buffer.exportTo(expected, 10, 900);
+        assertEquals(expected.toString(), sink.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void linesStreamsARowRange() {
+        TerminalBuffer buffer = filled();
+        List<String> lines = buffer.lines(2, 5).map(CharSequence::toString).collect(Collectors.toList());
+
+        assertEquals(3, lines.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(buffer.getLineAsString(2 + i), lines.get(i));
+        }
+        assertEquals(0, buffer.lines(4, 4).count());
+        assertThrows(IllegalArgumentException.class, () -> buffer.lines(0, buffer.totalLines() + 1));
+        assertThrows(IllegalArgumentException.class, () -> buffer.lines(3, 2));
+    }
+}
@@ -63,4 +63,66 @@ public class TerminalBufferInsertWrapTest {
         assertEquals(2, x.fg());
         assertEquals(1, bAttr.fg());
     }
+
+    @Test
+    void insertCarriesDisplacedTailThroughFollowingLines() {
+        TerminalBuffer b = new TerminalBuffer(4, 3, 10);
+        b.write("abcd");
+        b.setCursor(0, 1);
+        b.write("efgh");
+
+        b.setCursor(1, 0);
+        b.insert("XY");
+
+        assertEquals("aXYb", b.getLineAsString(0));
+        assertEquals("cdef", b.getLineAsString(1));
+        assertEquals("gh  ", b.getLineAsString(2));
+        assertEquals(3, b.cursorCol());
+        assertEquals(0, b.cursorRow());
+    }
+
+    @Test
+    void longInsertSpansRowsAndScrolls() {
+        TerminalBuffer b = new TerminalBuffer(3, 2, 10);
+        b.insert("abcdefg");
+
+        assertEquals(1, b.scrollbackSize());
+        assertEquals("abc", b.getLineAsString(0));
+        assertEquals("def", b.getLineAsString(1));
+        assertEquals("g  ", b.getLineAsString(2));
+        assertEquals(1, b.cursorCol());
+        assertEquals(1, b.cursorRow());
+    }
+
+    @Test
+    void insertStopsCarryAtFirstRowWithRoom() {
+        TerminalBuffer b = new TerminalBuffer(3, 3, 10);
+        b.write("abc");
+        b.setCursor(0, 1);
+        b.write("d");
+        b.setCursor(0, 2);
+        b.write("zzz");
+
+        b.setCursor(0, 0);
+        b.insert("X");
+
+        assertEquals("Xab", b.getLineAsString(0));
+        assertEquals("cd ", b.getLineAsString(1));
+        assertEquals("zzz", b.getLineAsString(2));
+    }
+
+    @Test
+    void insertWideAtLastColumnMovesItToNextRow() {
+        TerminalBuffer b = new TerminalBuffer(4, 2, 10);
+        String e = new String(Character.toChars(0x1F600));
+        b.write("abc");
+        b.setCursor(3, 0);
+        b.insert(e);
+
+        assertEquals("abc ", b.getLineAsString(0));
+        assertEquals(0x1F600, b.getCodePointAt(1, 0));
+        assertEquals(Cell.CONTINUATION, b.getCodePointAt(1, 1));
+        assertEquals(2, b.cursorCol());
+        assertEquals(1, b.cursorRow());
+    }
 }
@@ -0,0 +1,164 @@
+package org.example.terminalbuffer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TerminalBufferReflowTest {
+
+    private static String history(TerminalBuffer b) {
+        StringBuilder sb = new StringBuilder();
+        for (int row = 0; row < b.scrollbackSize(); row++) {
+            sb.append(b.getLineAsString(row).stripTrailing()).append('|');
+        }
+        return sb.toString();
+    }
+
+    @Test
+    void screenRowsJoinedBySoftWrapsRewrapAtTheNewWidth() {
+        TerminalBuffer b = new TerminalBuffer(5, 3, 10);
+        b.insert("abcdefgh");
+
+        b.resize(8, 3);
+        assertEquals("abcdefgh\n        \n        ", b.getScreenAsString());
+        assertEquals(0, b.scrollbackSize());
+        assertEquals(0, b.cursorRow());
+        assertEquals(7, b.cursorCol());
+
+        b.resize(5, 3);
+        assertEquals("abcde\nfgh  \n     ", b.getScreenAsString());
+    }
+
+    @Test
+    void wideCharacterThatNoLongerFitsMovesToTheNextRow() {
+        TerminalBuffer b = new TerminalBuffer(4, 2, 10);
+        b.write("ab中");
+
+        b.resize(3, 2);
+
+        assertEquals("ab \n中  ", b.getScreenAsString());
+        assertEquals(0, b.scrollbackSize());
+    }
+
+    @Test
+    void scrollbackIsRewrappedWhenRead() {
+        TerminalBuffer b = new TerminalBuffer(4, 1, 100);
+        b.insert("abcdefghij");
+        b.insertEmptyLineAtBottom();
+        b.setCursor(0, 0);
+        b.write("xy");
+        b.insertEmptyLineAtBottom();
+        assertEquals("abcd|efgh|ij|xy|", history(b));
+
+        b.resize(6, 1);
+        assertEquals("abcdef|ghij|xy|", history(b));
+        assertEquals(3 + 1, b.totalLines());
+
+        b.resize(3, 1);
+        assertEquals("abc|def|ghi|j|xy|", history(b));
+        assertEquals('g', b.getCodePointAt(2, 0));
+
+        b.resize(4, 1);
+        assertEquals("abcd|efgh|ij|xy|", history(b));
+    }
+
+    @Test
+    void rewrappedScrollbackKeepsUpWithPushesAndEviction() {
+        TerminalBuffer b = new TerminalBuffer(4, 1, 2);
+        b.insert("abcdefgh");
+        b.resize(2, 1);
+        assertEquals("ab|cd|ef|gh|", history(b));
+
+        // Room for two stored lines: "abcd", the first half of the logical line, is evicted.
+        b.setCursor(0, 0);
+        b.write("zz");
+        b.insertEmptyLineAtBottom();
+        assertEquals("ef|gh|zz|", history(b));
+
+        TerminalSnapshot snapshot = b.snapshot();
+        b.setCursor(0, 0);
+        b.write("qq");
+        b.insertEmptyLineAtBottom();
+        assertEquals("zz|qq|", history(b));
+        assertEquals("ef", snapshot.getLineAsString(0));
+        assertEquals(3, snapshot.scrollbackSize());
+    }
+
+    @Test
+    void historyRowsSplitAWideCharacterAtTheRowBoundary() {
+        TerminalBuffer b = new TerminalBuffer(6, 1, 10);
+        b.write("ab中cd");
+        b.insertEmptyLineAtBottom();
+
+        b.resize(3, 1);
+
+        assertEquals(2, b.scrollbackSize());
+        assertEquals('中', b.getCodePointAt(0, 2));
+        assertEquals(Cell.CONTINUATION, b.getCodePointAt(1, 0));
+        assertEquals(" cd", b.getLineAsString(1));
+    }
+
+    private static List<String> allRows(TerminalBuffer b) {
+        List<String> rows = new ArrayList<>();
+        for (int row = 0; row < b.totalLines(); row++) {
+            rows.add(b.getLineAsString(row));
+        }
+        return rows;
+    }
+
+    @Test
+    void parallelReflowStoresTheRowsThatWereShown() {
+        TerminalBuffer b = new TerminalBuffer(7, 2, 5000);
+        b.enableSearchIndex();
+        for (int i = 0; i < 1500; i++) {
+            b.setCursor(0, 1);
+            b.insert(i % 3 == 0 ? "line" + i + "-中文-wrapped" : "l" + i);
+            b.insertEmptyLineAtBottom();
+        }
+        b.resize(5, 2);
+        List<String> before = allRows(b);
+        List<SearchMatch> matches = b.search("wrap").toList();
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            b.reflowScrollback(pool);
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(before, allRows(b));
+        assertEquals(matches, b.search("wrap").toList());
+        assertFalse(matches.isEmpty());
+    }
+
+    @Test
+    void parallelReflowKeepsOnlyTheNewestRowsThatFit() {
+        TerminalBuffer b = new TerminalBuffer(6, 1, 3);
+        b.insert("abcdefghijkl");
+        b.resize(3, 1);
+        assertEquals("abc|def|ghi|jkl|", history(b));
+
+        b.reflowScrollback();
+
+        assertEquals("def|ghi|jkl|", history(b));
+        b.insertEmptyLineAtBottom();
+        assertEquals("ghi|jkl||", history(b));
+    }
+
+    @Test
+    void fullReflowPadsNarrowerHistoryLinesToTheDisplayWidth() {
+        TerminalBuffer b = new TerminalBuffer(3, 1, 10);
+        b.write("ab");
+        b.insertEmptyLineAtBottom();
+        b.resize(6, 1);
+        assertEquals("ab ", b.getLineAsString(0));
+
+        b.reflowScrollback();
+
+        assertEquals("ab    ", b.getLineAsString(0));
+    }
+}
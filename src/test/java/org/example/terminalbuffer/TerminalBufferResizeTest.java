@@ -22,7 +22,7 @@ public class TerminalBufferResizeTest {
     }
 
     @Test
-    void resizeNarrowerTruncatesRightSide() {
+    void resizeNarrowerRewrapsInsteadOfTruncating() {
         TerminalBuffer b = new TerminalBuffer(5, 1, 10);
         b.write("abcde");
 
@@ -30,7 +30,8 @@ public class TerminalBufferResizeTest {
 
         assertEquals(3, b.width());
         assertEquals(1, b.height());
-        assertEquals("abc", b.getLineAsString(b.scrollbackSize()));
+        assertEquals("abc", b.getLineAsString(0));
+        assertEquals("de ", b.getLineAsString(b.scrollbackSize()));
     }
 
     @Test
@@ -71,4 +72,20 @@ public class TerminalBufferResizeTest {
         assertEquals(2, b.cursorCol());
         assertEquals(1, b.cursorRow());
     }
+
+    @Test
+    void resizeStormReusesTheScreenLines() {
+        TerminalBuffer b = new TerminalBuffer(10, 2, 10);
+        b.write("abc");
+        Line top = b.screenLine(0);
+        Line bottom = b.screenLine(1);
+
+        for (int w = 9; w >= 4; w--) b.resize(w, 2);
+        for (int w = 5; w <= 10; w++) b.resize(w, 2);
+
+        assertSame(top, b.screenLine(0));
+        assertSame(bottom, b.screenLine(1));
+        assertEquals("abc       \n          ", b.getScreenAsString());
+        assertEquals(0, b.scrollbackSize());
+    }
 }
@@ -0,0 +1,203 @@
+package org.example.terminalbuffer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TerminalBufferScrollRegionTest {
+
+    private static TerminalBuffer numbered(int width, int height) {
+        TerminalBuffer b = new TerminalBuffer(width, height, 10);
+        for (int row = 0; row < height; row++) {
+            b.setCursor(0, row);
+            b.write("r" + row);
+        }
+        return b;
+    }
+
+    private static String screenRow(TerminalBuffer b, int row) {
+        return b.getLineAsString(b.scrollbackSize() + row);
+    }
+
+    @Test
+    void lineFeedAtRegionBottomScrollsOnlyTheRegion() {
+        TerminalBuffer b = numbered(4, 5);
+        b.setScrollRegion(1, 4);
+        b.setCursor(0, 3);
+        b.lineFeed();
+
+        assertEquals(0, b.scrollbackSize());
+        assertEquals("r0  ", screenRow(b, 0));
+        assertEquals("r2  ", screenRow(b, 1));
+        assertEquals("r3  ", screenRow(b, 2));
+        assertEquals("    ", screenRow(b, 3));
+        assertEquals("r4  ", screenRow(b, 4));
+        assertEquals(3, b.cursorRow());
+    }
+
+    @Test
+    void lineFeedBelowTheRegionStopsAtTheBottom() {
+        TerminalBuffer b = numbered(4, 4);
+        b.setScrollRegion(0, 2);
+        b.setCursor(0, 3);
+        b.lineFeed();
+
+        assertEquals(3, b.cursorRow());
+        assertEquals("r3  ", screenRow(b, 3));
+        assertEquals("r0  ", screenRow(b, 0));
+    }
+
+    @Test
+    void fullScreenRegionStillFeedsScrollback() {
+        TerminalBuffer b = numbered(4, 3);
+        b.setScrollRegion(0, 3);
+        b.scrollRegionUp(1);
+
+        assertEquals(1, b.scrollbackSize());
+        assertEquals("r0  ", b.getLineAsString(0));
+    }
+
+    @Test
+    void reverseLineFeedAtRegionTopScrollsDown() {
+        TerminalBuffer b = numbered(4, 4);
+        b.setScrollRegion(1, 3);
+        b.setCursor(0, 1);
+        b.reverseLineFeed();
+
+        assertEquals(1, b.cursorRow());
+        assertEquals("r0  ", screenRow(b, 0));
+        assertEquals("    ", screenRow(b, 1));
+        assertEquals("r1  ", screenRow(b, 2));
+        assertEquals("r3  ", screenRow(b, 3));
+    }
+
+    @Test
+    void insertAndDeleteLinesWorkFromTheCursorRow() {
+        TerminalBuffer b = numbered(4, 5);
+        b.setScrollRegion(0, 4);
+        b.setCursor(2, 1);
+        b.insertLines(2);
+        assertEquals("r0  |    |    |r1  |r4  ", screen(b));
+
+        b.deleteLines(1);
+        assertEquals("r0  |    |r1  |    |r4  ", screen(b));
+        assertEquals(2, b.cursorCol());
+
+        b.setCursor(0, 4);
+        b.insertLines(1);
+        assertEquals("r0  |    |r1  |    |r4  ", screen(b));
+    }
+
+    @Test
+    void insertAboveTheRegionKeepsTheCursorWhenTheRegionScrolls() {
+        TerminalBuffer b = new TerminalBuffer(4, 6, 10);
+        String[] rows = {"aaaa", "bbbb", "cccc", "dddd", "eeee", "ffff"};
+        for (int row = 0; row < rows.length; row++) {
+            b.setCursor(0, row);
+            b.write(rows[row]);
+        }
+        b.setScrollRegion(3, 6);
+        b.setCursor(1, 2);
+        b.insert("X");
+
+        assertEquals(2, b.cursorCol());
+        assertEquals(2, b.cursorRow());
+        assertEquals("aaaa|bbbb|cXcc|deee|efff|f   ", screen(b));
+    }
+
+    @Test
+    void shiftingByTheRegionSizeOrMoreClearsIt() {
+        TerminalBuffer b = numbered(4, 4);
+        b.setScrollRegion(1, 3);
+        b.scrollRegionDown(5);
+        assertEquals("r0  |    |    |r3  ", screen(b));
+    }
+
+    @Test
+    void invalidRegionsAreRejected() {
+        TerminalBuffer b = new TerminalBuffer(4, 4, 0);
+        assertThrows(IllegalArgumentException.class, () -> b.setScrollRegion(-1, 2));
+        assertThrows(IllegalArgumentException.class, () -> b.setScrollRegion(0, 5));
+        assertThrows(IllegalArgumentException.class, () -> b.setScrollRegion(2, 3));
+    }
+
+    @Test
+    void resizeResetsTheRegion() {
+        TerminalBuffer b = new TerminalBuffer(4, 4, 0);
+        b.setScrollRegion(1, 3);
+        b.resize(4, 6);
+        assertEquals(0, b.scrollRegionTop());
+        assertEquals(6, b.scrollRegionBottom());
+    }
+
+    @Test
+    void regionScrollDamagesTheMovedRowsOnly() {
+        TerminalBuffer b = numbered(4, 5);
+        b.collectDamage();
+        b.setScrollRegion(1, 4);
+        b.scrollRegionUp(1);
+
+        Damage damage = b.collectDamage();
+        assertEquals(0, damage.scrollDelta());
+        assertFalse(damage.isDirty(0));
+        for (int row = 1; row < 4; row++) {
+            assertEquals(0, damage.dirtyFrom(row));
+            assertEquals(4, damage.dirtyTo(row));
+        }
+        assertFalse(damage.isDirty(4));
+        assertTrue(b.collectDamage().isEmpty());
+    }
+
+    @Test
+    void regionOperationsMatchAListModel() {
+        // Regions of every size exercise both ways of rotating the ring.
+        Random random = new Random(24);
+        int height = 9;
+        TerminalBuffer b = numbered(3, height);
+        List<String> model = new ArrayList<>();
+        for (int row = 0; row < height; row++) model.add("r" + row);
+        int next = height;
+
+        for (int step = 0; step < 2000; step++) {
+            int top = random.nextInt(height - 1);
+            int bottom = top + 2 + random.nextInt(height - top - 1);
+            b.setScrollRegion(top, bottom);
+            int n = 1 + random.nextInt(bottom - top + 1);
+            boolean up = random.nextBoolean();
+            int from = top;
+            if (random.nextBoolean()) {
+                from = top + random.nextInt(bottom - top);
+                b.setCursor(0, from);
+                if (up) b.deleteLines(n);
+                else b.insertLines(n);
+            } else if (up) {
+                if (top == 0 && bottom == height) continue;
+                b.scrollRegionUp(n);
+            } else {
+                b.scrollRegionDown(n);
+            }
+            List<String> range = model.subList(from, bottom);
+            int k = Math.min(n, range.size());
+            Collections.rotate(range, up ? -k : k);
+            int exposed = up ? range.size() - k : 0;
+            for (int i = exposed; i < exposed + k; i++) range.set(i, "");
+
+            b.setCursor(0, random.nextInt(height));
+            String label = Integer.toString(next++ % 100);
+            b.write(label);
+            model.set(b.cursorRow(), label + model.get(b.cursorRow()).substring(Math.min(label.length(), model.get(b.cursorRow()).length())));
+            for (int row = 0; row < height; row++) {
+                assertEquals(String.format("%-3s", model.get(row)), screenRow(b, row), "step " + step + " row " + row);
+            }
+        }
+    }
+
+    private static String screen(TerminalBuffer b) {
+        return b.getScreenAsString().replace('\n', '|');
+    }
+}
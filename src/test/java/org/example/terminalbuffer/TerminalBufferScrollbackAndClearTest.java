@@ -2,6 +2,10 @@ package org.example.terminalbuffer;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class TerminalBufferScrollbackAndClearTest {
@@ -79,4 +83,166 @@ public class TerminalBufferScrollbackAndClearTest {
 
         assertEquals("abc\nxy \n   ", b.getAllAsString());
     }
+
+    @Test
+    void recycledLinesDoNotAliasScrollback() {
+        TerminalBuffer b = new TerminalBuffer(2, 1, 2);
+        for (int i = 0; i < 6; i++) {
+            b.setCursor(0, 0);
+            b.write(i + "" + i);
+            b.insertEmptyLineAtBottom();
+            assertEquals("  ", b.getLineAsString(b.scrollbackSize()));
+        }
+
+        b.setCursor(0, 0);
+        b.write("zz");
+
+        assertEquals(2, b.scrollbackSize());
+        assertEquals("44", b.getLineAsString(0));
+        assertEquals("55", b.getLineAsString(1));
+        assertEquals("zz", b.getLineAsString(2));
+    }
+
+    @Test
+    void scrollingWithoutScrollbackReusesTopLine() {
+        TerminalBuffer b = new TerminalBuffer(3, 2, 0);
+        b.write("abc");
+        b.setCursor(0, 1);
+        b.write("def");
+
+        b.insertEmptyLineAtBottom();
+        b.insertEmptyLineAtBottom();
+
+        assertEquals(0, b.scrollbackSize());
+        assertEquals("   \n   ", b.getScreenAsString());
+    }
+
+    @Test
+    void repeatedScrollsWithoutScrollbackKeepItEmpty() {
+        TerminalBuffer b = new TerminalBuffer(3, 2, 0);
+        for (int i = 0; i < 100; i++) {
+            b.write("x" + i % 10);
+            b.scrollUp(1 + i % 3);
+        }
+        b.setCursor(0, 1);
+        b.write("end");
+
+        assertEquals(0, b.scrollbackSize());
+        assertEquals(2, b.getAllAsString().split("\n", -1).length);
+        assertEquals("   \nend", b.getScreenAsString());
+    }
+
+    @Test
+    void scrollingAfterResizeUsesNewWidth() {
+        TerminalBuffer b = new TerminalBuffer(3, 2, 1);
+        b.write("abc");
+        b.insertEmptyLineAtBottom();
+        b.insertEmptyLineAtBottom();
+
+        b.resize(5, 2);
+        b.insertEmptyLineAtBottom();
+        b.insertEmptyLineAtBottom();
+        b.setCursor(0, 1);
+        b.write("12345");
+
+        assertEquals("12345", b.getLineAsString(b.scrollbackSize() + 1));
+    }
+
+    @Test
+    void scrollUpMovesScreenLinesThenBlanksIntoScrollback() {
+        TerminalBuffer b = new TerminalBuffer(2, 2, 10);
+        b.write("ab");
+        b.setCursor(0, 1);
+        b.write("cd");
+
+        b.scrollUp(3);
+
+        assertEquals(3, b.scrollbackSize());
+        assertEquals("ab", b.getLineAsString(0));
+        assertEquals("cd", b.getLineAsString(1));
+        assertEquals("  ", b.getLineAsString(2));
+        assertEquals("  \n  ", b.getScreenAsString());
+        assertEquals(1, b.cursorRow());
+    }
+
+    @Test
+    void scrollUpKeepsOnlyWhatFitsInScrollback() {
+        TerminalBuffer b = new TerminalBuffer(2, 3, 2);
+        b.write("11");
+        b.setCursor(0, 1);
+        b.write("22");
+        b.setCursor(0, 2);
+        b.write("33");
+
+        b.scrollUp(2);
+
+        assertEquals(2, b.scrollbackSize());
+        assertEquals("11", b.getLineAsString(0));
+        assertEquals("22", b.getLineAsString(1));
+        assertEquals("33", b.getLineAsString(2));
+
+        b.scrollUp(1);
+        assertEquals("22", b.getLineAsString(0));
+        assertEquals("33", b.getLineAsString(1));
+    }
+
+    @Test
+    void hugeScrollUpOnlyTouchesRetainedLines() {
+        TerminalBuffer b = new TerminalBuffer(3, 2, 3);
+        b.write("abc");
+
+        b.scrollUp(Integer.MAX_VALUE);
+
+        assertEquals(3, b.scrollbackSize());
+        assertEquals("   \n   \n   \n   \n   ", b.getAllAsString());
+        assertThrows(IllegalArgumentException.class, () -> b.scrollUp(-1));
+    }
+
+    @Test
+    void scrollbackKeepsCodePointsAndAttributes() {
+        TerminalBuffer b = new TerminalBuffer(4, 1, 10);
+        b.setCurrentAttributes((byte) 3, TextAttributes.DEFAULT_COLOR, false, false, true);
+        b.write("ab");
+        b.resetAttributes();
+        b.write("c");
+
+        b.insertEmptyLineAtBottom();
+
+        assertEquals("abc ", b.getLineAsString(0));
+        assertEquals('b', b.getCodePointAt(0, 1));
+        assertEquals(3, b.getAttributesAt(0, 1).fg());
+        assertTrue(b.getAttributesAt(0, 1).underline());
+        assertEquals(TextAttributes.defaults(), b.getAttributesAt(0, 2));
+        assertEquals(Cell.EMPTY, b.getCodePointAt(0, 3));
+    }
+
+    @Test
+    void narrowerScrollbackLinesReadAsEmptyPastTheirWidth() {
+        TerminalBuffer b = new TerminalBuffer(2, 1, 10);
+        b.write("ab");
+        b.insertEmptyLineAtBottom();
+        b.resize(4, 1);
+
+        assertEquals("ab", b.getLineAsString(0));
+        assertEquals(Cell.EMPTY, b.getCodePointAt(0, 3));
+    }
+
+    @Test
+    void coldCompressionOnBackgroundExecutorKeepsContentReadable() throws InterruptedException {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        TerminalBuffer buffer = new TerminalBuffer(6, 2, 5000);
+        buffer.enableColdCompression(300, executor);
+        for (int i = 0; i < 3000; i++) {
+            buffer.setCursor(0, 1);
+            buffer.write(Integer.toString(i));
+            buffer.insertEmptyLineAtBottom();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        for (int row = 0; row < buffer.scrollbackSize(); row++) {
+            String expected = row == 0 ? "" : Integer.toString(row - 1);
+            assertEquals(expected, buffer.getLineAsString(row).trim());
+        }
+    }
 }
@@ -0,0 +1,90 @@
+package org.example.terminalbuffer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TerminalBufferSearchTest {
+
+    private static TerminalBuffer history(int lines) {
+        TerminalBuffer buffer = new TerminalBuffer(20, 3, lines);
+        for (int i = 0; i < lines; i++) {
+            buffer.setCursor(0, 2);
+            buffer.write(i % 7 == 0 ? "error " + i : "ok " + i);
+            buffer.insertEmptyLineAtBottom();
+        }
+        return buffer;
+    }
+
+    @Test
+    void literalSearchFindsEveryOccurrenceInOrder() {
+        TerminalBuffer buffer = new TerminalBuffer(12, 2, 10);
+        buffer.write("abab ab");
+        buffer.setCursor(0, 1);
+        buffer.write("xab");
+
+        List<SearchMatch> matches = buffer.search("ab").collect(Collectors.toList());
+
+        assertEquals(List.of(new SearchMatch(0, 0), new SearchMatch(0, 2), new SearchMatch(0, 5),
+                new SearchMatch(1, 1)), matches);
+    }
+
+    @Test
+    void literalSearchSpansWideCharactersAndBlankCells() {
+        TerminalBuffer buffer = new TerminalBuffer(10, 1, 0);
+        buffer.write("x中文 y");
+
+        assertEquals(List.of(new SearchMatch(0, 1)), buffer.search("中文 y").collect(Collectors.toList()));
+        assertEquals(List.of(new SearchMatch(0, 3)), buffer.search("文").collect(Collectors.toList()));
+        assertEquals(0, buffer.search("中 ").count());
+    }
+
+    @Test
+    void regexSearchReportsCellColumns() {
+        TerminalBuffer buffer = new TerminalBuffer(12, 1, 0);
+        buffer.write("中😀 id=42");
+
+        List<SearchMatch> matches = buffer.search(Pattern.compile("id=\\d+")).collect(Collectors.toList());
+
+        assertEquals(List.of(new SearchMatch(0, 5)), matches);
+    }
+
+    @Test
+    void emptyRegexMatchesAtTheEndReportTheLineWidth() {
+        TerminalBuffer buffer = new TerminalBuffer(5, 1, 0);
+        buffer.write("ab");
+
+        assertEquals(List.of(new SearchMatch(0, 5)), buffer.search(Pattern.compile("$")).collect(Collectors.toList()));
+        assertEquals(List.of(0, 1, 2, 3, 4, 5),
+                buffer.search(Pattern.compile("x*")).map(SearchMatch::col).collect(Collectors.toList()));
+        assertEquals(List.of(0, 2),
+                buffer.search(Pattern.compile("\\b")).map(SearchMatch::col).collect(Collectors.toList()));
+    }
+
+    @Test
+    void parallelSearchMatchesSequentialOverScrollback() {
+        TerminalBuffer buffer = history(20_000);
+
+        List<SearchMatch> sequential = buffer.search("error").collect(Collectors.toList());
+        List<SearchMatch> parallel = buffer.search("error").parallel().collect(Collectors.toList());
+        List<SearchMatch> regex = buffer.search(Pattern.compile("^error")).parallel().collect(Collectors.toList());
+
+        assertEquals(20_000 / 7 + 1, sequential.size());
+        assertEquals(sequential, parallel);
+        assertEquals(sequential, regex);
+        assertEquals("error 7", buffer.getLineAsString(sequential.get(1).globalRow()).trim());
+    }
+
+    @Test
+    void searchRowRangeIsValidated() {
+        TerminalBuffer buffer = history(50);
+
+        assertEquals(1, buffer.search("error", 0, 5).count());
+        assertThrows(IllegalArgumentException.class, () -> buffer.search("", 0, 5));
+        assertThrows(IllegalArgumentException.class, () -> buffer.search("x", 0, buffer.totalLines() + 1));
+    }
+}
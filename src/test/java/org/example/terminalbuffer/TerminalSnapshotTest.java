@@ -0,0 +1,165 @@
+package org.example.terminalbuffer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TerminalSnapshotTest {
+
+    private static void scrollLine(TerminalBuffer buffer, String text) {
+        buffer.setCursor(0, buffer.height() - 1);
+        buffer.write(text);
+        buffer.insertEmptyLineAtBottom();
+    }
+
+    @Test
+    void snapshotIsUnaffectedByLaterWrites() {
+        TerminalBuffer buffer = new TerminalBuffer(6, 2, 10);
+        buffer.write("abc");
+        buffer.setCurrentAttributes((byte) 2, TextAttributes.DEFAULT_COLOR, true, false, false);
+        TerminalSnapshot snapshot = buffer.snapshot();
+
+        buffer.setCursor(0, 0);
+        buffer.write("XYZ");
+        buffer.insert("!");
+        buffer.fillLine(1, 'q');
+
+        assertEquals("abc   \n      ", snapshot.getScreenAsString());
+        assertEquals(3, snapshot.cursorCol());
+        assertTrue(snapshot.currentAttributes().bold());
+        assertEquals("XYZ!  \nqqqqqq", buffer.getScreenAsString());
+    }
+
+    @Test
+    void snapshotKeepsItsScrollbackRangeWhileTheRingEvictsAndClears() {
+        TerminalBuffer buffer = new TerminalBuffer(8, 2, Scrollback.CHUNK_SIZE * 2);
+        for (int i = 0; i < Scrollback.CHUNK_SIZE * 2; i++) {
+            scrollLine(buffer, "l" + i);
+        }
+        TerminalSnapshot snapshot = buffer.snapshot();
+        String first = snapshot.getLineAsString(1);
+        String last = snapshot.getLineAsString(snapshot.scrollbackSize() - 1);
+
+        for (int i = 0; i < Scrollback.CHUNK_SIZE * 5; i++) {
+            scrollLine(buffer, "new" + i);
+        }
+        buffer.clearAll();
+
+        assertEquals(Scrollback.CHUNK_SIZE * 2, snapshot.scrollbackSize());
+        assertEquals("l0", first.trim());
+        assertEquals(first, snapshot.getLineAsString(1));
+        assertEquals(last, snapshot.getLineAsString(snapshot.scrollbackSize() - 1));
+        assertEquals(2, snapshot.search("l100").count() + snapshot.search("l10 ").count());
+    }
+
+    @Test
+    void unchangedBufferReturnsTheSameSnapshot() {
+        TerminalBuffer buffer = new TerminalBuffer(4, 2, 10);
+        buffer.write("a");
+        TerminalSnapshot first = buffer.snapshot();
+
+        assertSame(first, buffer.snapshot());
+
+        buffer.write("b");
+        TerminalSnapshot second = buffer.snapshot();
+        assertNotSame(first, second);
+        assertTrue(second.version() > first.version());
+
+        buffer.moveCursorLeft(1);
+        assertNotSame(second, buffer.snapshot());
+    }
+
+    @Test
+    void copyOnWriteKeepsDamageOfTheLiveLine() {
+        TerminalBuffer buffer = new TerminalBuffer(6, 1, 0);
+        buffer.collectDamage();
+        buffer.write("ab");
+        buffer.snapshot();
+        buffer.write("cd");
+
+        Damage damage = buffer.collectDamage();
+        assertEquals(0, damage.dirtyFrom(0));
+        assertEquals(4, damage.dirtyTo(0));
+    }
+
+    @Test
+    void readerThreadSeesConsistentSnapshotsWhileWriterRuns() throws Exception {
+        TerminalBuffer buffer = new TerminalBuffer(10, 4, 1000);
+        AtomicReference<TerminalSnapshot> published = new AtomicReference<>(buffer.snapshot());
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Thread reader = new Thread(() -> {
+            try {
+                for (int k = 0; k < 2000; k++) {
+                    TerminalSnapshot s = published.get();
+                    // The writer keeps each screen line uniform, so a torn line would show mixed digits.
+                    for (int row = 0; row < s.totalLines(); row += 7) {
+                        String line = s.getLineAsString(row).trim();
+                        if (!line.isEmpty() && !line.chars().allMatch(c -> c == line.charAt(0))) {
+                            throw new AssertionError("torn line: " + line);
+                        }
+                    }
+                }
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        reader.start();
+        for (int i = 0; reader.isAlive() && i < 200_000; i++) {
+            buffer.fillLine(i % 4, '0' + i % 10);
+            if (i % 5 == 0) buffer.scrollUp(1);
+            published.set(buffer.snapshot());
+        }
+        reader.join();
+        assertNull(failure.get());
+    }
+
+    @Test
+    void snapshotReadsSpilledLines(@TempDir Path dir) {
+        try (TerminalBuffer buffer = new TerminalBuffer(8, 1, 4)) {
+            buffer.enableDiskSpill(dir);
+            for (int i = 0; i < 20; i++) {
+                scrollLine(buffer, "s" + i);
+            }
+            TerminalSnapshot snapshot = buffer.snapshot();
+            for (int i = 20; i < 40; i++) {
+                scrollLine(buffer, "s" + i);
+            }
+
+            assertEquals(20, snapshot.scrollbackSize());
+            assertEquals("s3", snapshot.getLineAsString(3).trim());
+            assertEquals("s19", snapshot.getLineAsString(19).trim());
+        }
+    }
+
+    @Test
+    void spilledLinesSurviveClearAndReflow(@TempDir Path dir) {
+        try (TerminalBuffer buffer = new TerminalBuffer(4, 1, 1)) {
+            buffer.enableDiskSpill(dir);
+            for (int i = 0; i < 3; i++) {
+                scrollLine(buffer, "A" + i);
+            }
+            TerminalSnapshot snapshot = buffer.snapshot();
+
+            buffer.clearAll();
+            for (int i = 0; i < 6; i++) {
+                scrollLine(buffer, "Z" + i);
+            }
+            buffer.resize(2, 1);
+            TerminalSnapshot reflowed = buffer.snapshot();
+            buffer.reflowScrollback();
+            for (int i = 0; i < 6; i++) {
+                scrollLine(buffer, "N" + i);
+            }
+
+            assertEquals("A0|A1|A2", snapshot.getLineAsString(0).trim() + "|"
+                    + snapshot.getLineAsString(1).trim() + "|" + snapshot.getLineAsString(2).trim());
+            assertEquals("Z0", reflowed.getLineAsString(0));
+            assertEquals("Z5", reflowed.getLineAsString(5));
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package org.example.terminalbuffer;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VtParserTest {
+
+    private static void feed(VtParser parser, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        parser.feed(bytes, 0, bytes.length);
+    }
+
+    @Test
+    void printableTextAndLineControls() {
+        TerminalBuffer buffer = new TerminalBuffer(10, 3, 10);
+        VtParser parser = new VtParser(buffer);
+
+        feed(parser, "abc\r\nde\tf\bg");
+
+        assertEquals("abc       ", buffer.getLineAsString(0));
+        assertEquals("de      g ", buffer.getLineAsString(1));
+        assertEquals(9, buffer.cursorCol());
+        assertEquals(1, buffer.cursorRow());
+    }
+
+    @Test
+    void lineFeedOnBottomRowScrolls() {
+        TerminalBuffer buffer = new TerminalBuffer(4, 2, 10);
+        VtParser parser = new VtParser(buffer);
+
+        feed(parser, "1\r\n2\r\n3");
+
+        assertEquals(1, buffer.scrollbackSize());
+        assertEquals("1   ", buffer.getLineAsString(0));
+        assertEquals("2   \n3   ", buffer.getScreenAsString());
+    }
+
+    @Test
+    void utf8SplitAcrossChunksIsReassembled() {
+        TerminalBuffer buffer = new TerminalBuffer(6, 1, 0);
+        VtParser parser = new VtParser(buffer);
+        byte[] bytes = "a€中b".getBytes(StandardCharsets.UTF_8);
+
+        for (int i = 0; i < bytes.length; i++) {
+            parser.feed(ByteBuffer.wrap(bytes, i, 1));
+        }
+
+        assertEquals('a', buffer.getCodePointAt(0, 0));
+        assertEquals('€', buffer.getCodePointAt(0, 1));
+        assertEquals('中', buffer.getCodePointAt(0, 2));
+        assertEquals(Cell.CONTINUATION, buffer.getCodePointAt(0, 3));
+        assertEquals('b', buffer.getCodePointAt(0, 4));
+    }
+
+    @Test
+    void truncatedSequenceBeforeControlBecomesReplacement() {
+        TerminalBuffer buffer = new TerminalBuffer(6, 2, 0);
+        VtParser parser = new VtParser(buffer);
+
+        parser.feed(new byte[]{'x', (byte) 0xE2, (byte) 0x82}, 0, 3);
+        parser.feed(new byte[]{'\r', 'y'}, 0, 2);
+
+        assertEquals('y', buffer.getCodePointAt(0, 0));
+        assertEquals(Utf8.REPLACEMENT, buffer.getCodePointAt(0, 1));
+    }
+
+    @Test
+    void cursorPositioningAndErase() {
+        TerminalBuffer buffer = new TerminalBuffer(5, 3, 0);
+        VtParser parser = new VtParser(buffer);
+        feed(parser, "aaaaa\r\nbbbbb\r\nccccc");
+
+        feed(parser, "\u001b[2;3H");
+        assertEquals(2, buffer.cursorCol());
+        assertEquals(1, buffer.cursorRow());
+
+        feed(parser, "\u001b[K\u001b[A\u001b[1K\u001b[3;1H\u001b[2C\u001b[0J");
+        assertEquals("   aa\nbb   \ncc   ", buffer.getScreenAsString());
+        assertEquals(2, buffer.cursorCol());
+        assertEquals(2, buffer.cursorRow());
+    }
+
+    @Test
+    void selectGraphicRenditionSetsAttributes() {
+        TerminalBuffer buffer = new TerminalBuffer(8, 1, 0);
+        VtParser parser = new VtParser(buffer);
+
+        feed(parser, "\u001b[1;31;104mA\u001b[22;39mB\u001b[38;5;2;4mC\u001b[0mD");
+
+        TextAttributes a = buffer.getAttributesAt(0, 0);
+        assertTrue(a.bold());
+        assertEquals(1, a.fg());
+        assertEquals(12, a.bg());
+        TextAttributes b = buffer.getAttributesAt(0, 1);
+        assertFalse(b.bold());
+        assertEquals(TextAttributes.DEFAULT_COLOR, b.fg());
+        assertEquals(12, b.bg());
+        TextAttributes c = buffer.getAttributesAt(0, 2);
+        assertEquals(2, c.fg());
+        assertTrue(c.underline());
+        assertSame(TextAttributes.defaults(), buffer.getAttributesAt(0, 3));
+    }
+
+    @Test
+    void unsupportedSequencesAndStringsAreSwallowed() {
+        TerminalBuffer buffer = new TerminalBuffer(8, 1, 0);
+        VtParser parser = new VtParser(buffer);
+
+        feed(parser, "\u001b]0;title\u0007a\u001b[?25lb\u001b(Bc\u001bP1$r\u001b\\d");
+
+        assertEquals("abcd    ", buffer.getLineAsString(0));
+    }
+
+    @Test
+    void scrollRegionAndLineEditing() {
+        TerminalBuffer buffer = new TerminalBuffer(3, 4, 10);
+        VtParser parser = new VtParser(buffer);
+
+        feed(parser, "a\r\nb\r\nc\r\nd\u001b[2;3r");
+        assertEquals(1, buffer.scrollRegionTop());
+        assertEquals(3, buffer.scrollRegionBottom());
+        assertEquals(0, buffer.cursorRow());
+
+        feed(parser, "\u001b[3;1H\n\n");
+        assertEquals(0, buffer.scrollbackSize());
+        assertEquals("a  \n   \n   \nd  ", buffer.getScreenAsString());
+
+        feed(parser, "x\u001b[2;2H\u001b[L");
+        assertEquals(0, buffer.cursorCol());
+        assertEquals("a  \n   \n   \nd  ", buffer.getScreenAsString());
+        feed(parser, "y\u001b[M\u001bM\u001bMz");
+        assertEquals("a  \nz  \n   \nd  ", buffer.getScreenAsString());
+
+        feed(parser, "\u001b[r");
+        assertEquals(4, buffer.scrollRegionBottom());
+    }
+
+    @Test
+    void alternateScreenMode() {
+        TerminalBuffer buffer = new TerminalBuffer(4, 2, 10);
+        VtParser parser = new VtParser(buffer);
+
+        feed(parser, "ab\u001b[?1049hxy\r\n\n\n");
+        assertTrue(buffer.isAlternateScreen());
+        assertEquals(0, buffer.scrollbackSize());
+
+        feed(parser, "\u001b[?25;1049l");
+        assertFalse(buffer.isAlternateScreen());
+        assertEquals("ab  \n    ", buffer.getScreenAsString());
+        assertEquals(2, buffer.cursorCol());
+    }
+
+    @Test
+    void textPastTheRightMarginWraps() {
+        TerminalBuffer buffer = new TerminalBuffer(4, 3, 10);
+        VtParser parser = new VtParser(buffer);
+
+        feed(parser, "abcdefgh\r\nxy");
+        assertEquals("abcd\nefgh\nxy  ", buffer.getScreenAsString());
+
+        feed(parser, "\u001b[2J\u001b[Habcd\rX\u001b[2;1Hpqrs\u001b[1;4Hz");
+        assertEquals("Xbcz\npqrs\n    ", buffer.getScreenAsString());
+
+        buffer.resize(8, 3);
+        feed(parser, "\u001b[2J\u001b[H\u001b[?7labcdefghij\u001b[?7h");
+        assertEquals("abcdefgj", buffer.getLineAsString(buffer.scrollbackSize()));
+    }
+
+    @Test
+    void wrappedOutputRejoinsOnResize() {
+        TerminalBuffer buffer = new TerminalBuffer(4, 3, 10);
+        VtParser parser = new VtParser(buffer);
+
+        feed(parser, "abcdefgh\r\n");
+        buffer.resize(8, 3);
+
+        assertEquals("abcdefgh", buffer.getLineAsString(0));
+    }
+}